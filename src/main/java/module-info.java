@@ -1,9 +1,14 @@
 module RetailStore {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
     exports retailstore;
     exports model;
     exports payment;
     exports service;
     exports util;
+    exports ledger;
+    exports ui;
+    exports api;
+    exports replication;
 }
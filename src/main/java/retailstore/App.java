@@ -1,16 +1,21 @@
 package retailstore;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import api.PosApiServer;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.event.Event;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.layout.*;
 import javafx.stage.Modality;
@@ -19,14 +24,37 @@ import javafx.util.converter.DoubleStringConverter;
 import javafx.util.converter.IntegerStringConverter;
 import model.*;
 import payment.*;
+import replication.ReplicationPrimary;
+import ledger.HistoryCompactor;
+import ledger.SalesLedger;
+import service.CredentialStore;
+import service.ProductService;
+import service.ReservationManager;
+import service.SalesQuery;
+import service.SalesService;
+import ui.BatchedObservableList;
+import ui.ListUpdateCoalescer;
 import util.*;
 
 public class App extends Application {
     private static User currentUser;
-    private static List<Product> inventory = new ArrayList<>();
-    private static List<Product> cart = new ArrayList<>();
-    private static List<Sale> sales = new ArrayList<>();
-    private static List<User> users = new ArrayList<>();
+    private static ProductService productService = new ProductService();
+    private static Map<String, Product> cart = new LinkedHashMap<>();
+    private static ListUpdateCoalescer<Product> inventoryUpdates;
+    private static ListUpdateCoalescer<Product> cartUpdates;
+    // The till's cart holds stock like any API cart and gives it back if left alone
+    private static ReservationManager reservations;
+    private static final String TILL_CART = "TILL";
+    private static SalesService salesService = new SalesService();
+    // Only the open day is read raw at start-up; reports use the ledger's daily summaries for older days
+    private static final int RESIDENT_SALES_DAYS = 1;
+    private static CredentialStore credentials = new CredentialStore();
+    // Set when the sales ledger could not be opened; checkout and refunds stay off so no sale goes unrecorded
+    private static String ledgerError;
+    private static SalesLedger ledger;
+    private static HistoryCompactor compactor;
+    private static PosApiServer apiServer;
+    private static ReplicationPrimary replicationPrimary;
 
     public static void main(String[] args) {
         launch(args);
@@ -35,57 +63,78 @@ public class App extends Application {
     @Override
     public void start(Stage primaryStage) {
         loadData();
+        // First-run plaintext passwords are hashed off the FX thread; until then they verify as they are
+        runInBackground("password-migration", () -> credentials.migratePlaintext("data/users.csv"), migrated -> { },
+                e -> System.err.println("Warning: Could not hash plaintext passwords: " + e.getMessage()));
+        reservations = new ReservationManager(productService, ReservationManager.DEFAULT_TTL_MILLIS);
+        if (ledgerError == null) {
+            startApiServer();
+            startReplication();
+        }
         showLoginDialog(primaryStage);
     }
 
+    // Serves the POS API for scanners and kiosks when started with -Dretailstore.api.port=<port>
+    private static void startApiServer() {
+        String port = System.getProperty("retailstore.api.port");
+        if (port == null) return;
+        try {
+            String host = System.getProperty("retailstore.api.host", "127.0.0.1");
+            apiServer = new PosApiServer(new java.net.InetSocketAddress(host, Integer.parseInt(port)),
+                    productService, salesService, reservations, credentials);
+            apiServer.start();
+            System.out.println("POS API listening on port " + apiServer.getAddress().getPort());
+        } catch (Exception e) {
+            System.err.println("Warning: Could not start POS API: " + e.getMessage());
+        }
+    }
+
+    // Streams sales and catalog changes to a warm standby when started with -Dretailstore.replication.port=<port>
+    private static void startReplication() {
+        String port = System.getProperty("retailstore.replication.port");
+        if (port == null) return;
+        try {
+            String host = System.getProperty("retailstore.replication.host", "127.0.0.1");
+            replicationPrimary = new ReplicationPrimary(new java.net.InetSocketAddress(host, Integer.parseInt(port)),
+                    productService, salesService);
+            System.out.println("Replication primary listening on port " + replicationPrimary.getPort());
+        } catch (Exception e) {
+            System.err.println("Warning: Could not start replication: " + e.getMessage());
+        }
+    }
+
     private static void loadData() {
         try {
-            inventory = StoreUtils.loadProductsFromCSV("data/products.csv");
-            users = StoreUtils.loadUsersFromCSV("data/users.csv");
-            // Load sales data - properly reconstruct Sale objects
-            sales = loadSalesFromCSV("data/sales.csv");
+            loadInventory(StoreUtils.loadProductsFromCSV("data/products.csv"));
+            credentials.load("data/users.csv");
         } catch (Exception e) {
             // Initialize with default data if files don't exist
             initializeDefaultData();
         }
 
         // If no data loaded, initialize defaults
-        if (inventory.isEmpty() || users.isEmpty()) {
+        if (productService.getAllProducts().isEmpty() || credentials.size() == 0) {
             initializeDefaultData();
         }
-    }
 
-    private static List<Sale> loadSalesFromCSV(String filename) {
-        List<Sale> loadedSales = new ArrayList<>();
         try {
-            List<String> saleStrings = StoreUtils.loadSaleStringsFromCSV(filename);
-            DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-            for (String line : saleStrings) {
-                String[] parts = line.split(",");
-                if (parts.length >= 8) {
-                    String saleId = parts[0];
-                    String customerType = parts[1];
-                    String customerName = parts[2];
-                    double totalAmount = Double.parseDouble(parts[3]);
-                    double discountAmount = Double.parseDouble(parts[4]);
-                    double finalAmount = Double.parseDouble(parts[5]);
-                    String paymentType = parts[6];
-                    LocalDateTime timestamp = LocalDateTime.parse(parts[7], formatter);
-
-                    // Create customer and payment objects
-                    Customer customer = customerType.equals("VIP") ? new VIPCustomer(customerName) : new Customer(customerName);
-                    Payment payment = paymentType.equals("CashPayment") ? new CashPayment() : new CardPayment();
-
-                    // Use the constructor with pre-calculated amounts
-                    Sale sale = new Sale(saleId, customer, payment, totalAmount, discountAmount, finalAmount, timestamp);
-                    loadedSales.add(sale);
-                }
+            // Sales live in the segmented ledger; only recent days are loaded
+            ledger = new SalesLedger(java.nio.file.Paths.get("data/ledger"));
+            java.nio.file.Path legacySales = java.nio.file.Paths.get("data/sales.csv");
+            if (ledger.isEmpty() && java.nio.file.Files.exists(legacySales)) {
+                ledger.importLegacyCSV(legacySales);
             }
+            salesService = new SalesService(ledger, RESIDENT_SALES_DAYS);
+            compactor = new HistoryCompactor(ledger, HistoryCompactor.DEFAULT_INTERVAL_MINUTES);
         } catch (Exception e) {
-            // If loading fails, return empty list
-            System.err.println("Warning: Could not load sales data: " + e.getMessage());
+            ledgerError = e.getMessage() != null ? e.getMessage() : e.toString();
+            System.err.println("Warning: Could not open the sales ledger: " + ledgerError);
         }
-        return loadedSales;
+    }
+
+    private static void loadInventory(List<Product> products) {
+        productService = new ProductService();
+        productService.addProducts(products);
     }
 
     private static void initializeDefaultData() {
@@ -114,20 +163,35 @@ public class App extends Application {
             }
 
             // Now load the data
-            inventory = StoreUtils.loadProductsFromCSV("data/products.csv");
-            users = StoreUtils.loadUsersFromCSV("data/users.csv");
+            loadInventory(StoreUtils.loadProductsFromCSV("data/products.csv"));
+            credentials.load("data/users.csv");
 
         } catch (Exception e) {
             // If all else fails, add minimal defaults to memory
-            inventory.add(new Product("Apple", 100.0, 50));
-            users.add(new User("admin", "admin123", "Admin"));
+            productService.addProduct(new Product("Apple", 100.0, 50));
+            credentials.addUser(new User("admin", "admin123", "Admin"));
         }
     }
 
     private static void showLoginDialog(Stage primaryStage) {
+        showCredentialsDialog("Login", null, user -> {
+            currentUser = user;
+            showMainWindow(primaryStage);
+        });
+    }
+
+    // Hides the till until the signed-in user enters their password again
+    private static void lockTill(Stage primaryStage) {
+        primaryStage.getScene().getRoot().setVisible(false);
+        showCredentialsDialog("Till Locked", currentUser.getUsername(),
+                user -> primaryStage.getScene().getRoot().setVisible(true));
+    }
+
+    // With a fixed username the dialog cannot be cancelled, only unlocked
+    private static void showCredentialsDialog(String title, String fixedUsername, Consumer<User> onSuccess) {
         Stage loginStage = new Stage();
         loginStage.initModality(Modality.APPLICATION_MODAL);
-        loginStage.setTitle("Login");
+        loginStage.setTitle(title);
 
         GridPane grid = new GridPane();
         grid.setHgap(20);
@@ -138,26 +202,44 @@ public class App extends Application {
         TextField txtUsername = new TextField();
         Label lblPassword = new Label("Password:");
         PasswordField txtPassword = new PasswordField();
-        Button btnLogin = new Button("Login");
+        Button btnLogin = new Button(fixedUsername == null ? "Login" : "Unlock");
         Button btnCancel = new Button("Cancel");
+        btnLogin.setDefaultButton(true);
+        if (fixedUsername != null) {
+            txtUsername.setText(fixedUsername);
+            txtUsername.setEditable(false);
+        }
 
         btnLogin.setOnAction(e -> {
             String username = txtUsername.getText();
             String password = txtPassword.getText();
 
-            for (User user : users) {
-                if (user.getUsername().equals(username) && user.authenticate(password)) {
-                    currentUser = user;
-                    loginStage.close();
-                    showMainWindow(primaryStage);
+            // The password hash is slow on purpose, so it runs off the FX thread
+            btnLogin.setDisable(true);
+            Task<User> verify = new Task<User>() {
+                @Override
+                protected User call() {
+                    return credentials.authenticate(username, password);
+                }
+            };
+            verify.setOnSucceeded(ev -> {
+                btnLogin.setDisable(false);
+                User user = verify.getValue();
+                if (user == null) {
+                    txtPassword.clear();
+                    showError("Login Failed", "Invalid credentials!");
                     return;
                 }
-            }
-            Alert alert = new Alert(Alert.AlertType.ERROR);
-            alert.setTitle("Login Failed");
-            alert.setHeaderText(null);
-            alert.setContentText("Invalid credentials!");
-            alert.showAndWait();
+                loginStage.close();
+                onSuccess.accept(user);
+            });
+            verify.setOnFailed(ev -> {
+                btnLogin.setDisable(false);
+                showError("Login Failed", "Could not verify credentials: " + verify.getException().getMessage());
+            });
+            Thread verifier = new Thread(verify, "login-verify");
+            verifier.setDaemon(true);
+            verifier.start();
         });
 
         btnCancel.setOnAction(e -> System.exit(0));
@@ -167,7 +249,11 @@ public class App extends Application {
         grid.add(lblPassword, 0, 1);
         grid.add(txtPassword, 1, 1);
         grid.add(btnLogin, 1, 2);
-        grid.add(btnCancel, 2, 2);
+        if (fixedUsername == null) {
+            grid.add(btnCancel, 2, 2);
+        } else {
+            loginStage.setOnCloseRequest(Event::consume);
+        }
 
         Scene scene = new Scene(grid, 400, 200);
         loginStage.setScene(scene);
@@ -177,25 +263,61 @@ public class App extends Application {
     private static void showMainWindow(Stage primaryStage) {
         primaryStage.setTitle("Retail Store Management - " + currentUser.getRole());
 
+        // Create observable lists for proper data binding. Model changes reach them through
+        // coalescers that apply at most one batch per pulse, whichever thread made the change.
+        BatchedObservableList<Product> inventoryObservable = new BatchedObservableList<>(productService.getAllProducts());
+        BatchedObservableList<Product> cartObservable = new BatchedObservableList<>(cart.values());
+        inventoryUpdates = new ListUpdateCoalescer<>(inventoryObservable, Product::getName);
+        cartUpdates = new ListUpdateCoalescer<>(cartObservable, Product::getName);
+        productService.addChangeListener((name, current) -> {
+            if (current == null) {
+                inventoryUpdates.remove(name);
+            } else {
+                inventoryUpdates.submit(current);
+            }
+        });
+        reservations.addExpiryListener((owner, name, quantity) -> {
+            if (TILL_CART.equals(owner)) Platform.runLater(() -> syncCartItem(name));
+        });
+
         // Menu Bar
         MenuBar menuBar = new MenuBar();
         Menu fileMenu = new Menu("File");
         MenuItem saveItem = new MenuItem("Save Data");
         saveItem.setOnAction(e -> saveData(primaryStage));
+        MenuItem lockItem = new MenuItem("Lock Till");
+        lockItem.setOnAction(e -> lockTill(primaryStage));
         MenuItem exitItem = new MenuItem("Exit");
-        exitItem.setOnAction(e -> System.exit(0));
-        fileMenu.getItems().addAll(saveItem, exitItem);
+        exitItem.setOnAction(e -> {
+            shutdown();
+            System.exit(0);
+        });
+        fileMenu.getItems().addAll(saveItem, lockItem, exitItem);
         menuBar.getMenus().add(fileMenu);
 
         if (currentUser.isAdmin()) {
             Menu adminMenu = new Menu("Admin");
             MenuItem addProductItem = new MenuItem("Add Product");
             addProductItem.setOnAction(e -> showAddProductDialog(primaryStage));
+            MenuItem importCatalogItem = new MenuItem("Import Catalog");
+            importCatalogItem.setOnAction(e -> importCatalog(primaryStage));
             MenuItem removeProductItem = new MenuItem("Remove Product");
             removeProductItem.setOnAction(e -> removeSelectedProduct());
             MenuItem viewSalesItem = new MenuItem("View Sales History");
             viewSalesItem.setOnAction(e -> showSalesHistoryDialog(primaryStage));
-            adminMenu.getItems().addAll(addProductItem, removeProductItem, new SeparatorMenuItem(), viewSalesItem);
+            MenuItem exportItem = new MenuItem("Export Reports");
+            exportItem.setOnAction(e -> showExportDialog(primaryStage));
+            MenuItem refundItem = new MenuItem("Refund Sale");
+            refundItem.setOnAction(e -> showRefundDialog(primaryStage));
+            refundItem.setDisable(ledgerError != null);
+            MenuItem checkSummariesItem = new MenuItem("Verify Daily Summaries");
+            checkSummariesItem.setOnAction(e -> verifySummaries());
+            MenuItem holdsItem = new MenuItem("Cart Holds");
+            holdsItem.setOnAction(e -> showInfo("Cart Holds", String.format(
+                    "Active holds: %d\nReserved units: %d\nExpired holds: %d (%d units)",
+                    reservations.getActiveHolds(), reservations.getReservedUnits(),
+                    reservations.getExpiredHolds(), reservations.getExpiredUnits())));
+            adminMenu.getItems().addAll(addProductItem, importCatalogItem, removeProductItem, new SeparatorMenuItem(), viewSalesItem, exportItem, checkSummariesItem, refundItem, holdsItem);
             menuBar.getMenus().add(adminMenu);
         }
 
@@ -203,23 +325,19 @@ public class App extends Application {
         BorderPane root = new BorderPane();
         root.setTop(menuBar);
 
-        // Create observable lists for proper data binding
-        ObservableList<Product> inventoryObservable = FXCollections.observableArrayList(inventory);
-        ObservableList<Product> cartObservable = FXCollections.observableArrayList(cart);
-
         // Inventory Table
         TableView<Product> inventoryTable = new TableView<>();
         TableColumn<Product, String> nameCol = new TableColumn<>("Name");
-        nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        nameCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getName()));
         TableColumn<Product, Double> priceCol = new TableColumn<>("Price");
-        priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        priceCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getPrice()));
         TableColumn<Product, Integer> stockCol = new TableColumn<>("Stock");
-        stockCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        stockCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getQuantity()));
         inventoryTable.getColumns().addAll(nameCol, priceCol, stockCol);
         inventoryTable.setItems(inventoryObservable);
 
         Button btnAddToCart = new Button("Add to Cart");
-        btnAddToCart.setOnAction(e -> addToCart(inventoryTable, inventoryObservable, cartObservable));
+        btnAddToCart.setOnAction(e -> addToCart(inventoryTable));
 
         VBox inventoryPanel = new VBox(10, new Label("Inventory"), inventoryTable, btnAddToCart);
         inventoryPanel.setPadding(new Insets(10));
@@ -227,25 +345,25 @@ public class App extends Application {
         // Cart Table
         TableView<Product> cartTable = new TableView<>();
         TableColumn<Product, String> cartNameCol = new TableColumn<>("Name");
-        cartNameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        cartNameCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getName()));
         TableColumn<Product, Double> cartPriceCol = new TableColumn<>("Price");
-        cartPriceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        cartPriceCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getPrice()));
         TableColumn<Product, Integer> cartQtyCol = new TableColumn<>("Quantity");
-        cartQtyCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        cartQtyCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getQuantity()));
         cartQtyCol.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerStringConverter()));
         cartQtyCol.setOnEditCommit(event -> {
             Product item = event.getRowValue();
             int newQuantity = event.getNewValue();
-            updateCartQuantity(item, newQuantity, cartTable, inventoryTable, cartObservable, inventoryObservable);
+            updateCartQuantity(item, newQuantity, cartTable);
         });
         TableColumn<Product, Double> cartTotalCol = new TableColumn<>("Total");
-        cartTotalCol.setCellValueFactory(new PropertyValueFactory<>("total"));
+        cartTotalCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getTotal()));
         cartTable.getColumns().addAll(cartNameCol, cartPriceCol, cartQtyCol, cartTotalCol);
         cartTable.setItems(cartObservable);
         cartTable.setEditable(true);
 
         Button btnRemoveFromCart = new Button("Remove from Cart");
-        btnRemoveFromCart.setOnAction(e -> removeFromCart(cartTable, inventoryTable, cartObservable, inventoryObservable));
+        btnRemoveFromCart.setOnAction(e -> removeFromCart(cartTable));
 
         VBox cartPanel = new VBox(10, new Label("Cart"), cartTable, btnRemoveFromCart);
         cartPanel.setPadding(new Insets(10));
@@ -263,7 +381,8 @@ public class App extends Application {
         Button btnCheckout = new Button("Checkout");
         btnCheckout.setOnAction(e -> checkout(txtCustomerName.getText(),
                 cmbCustomerType.getValue(),
-                cmbPaymentType.getValue(), cartTable, inventoryTable, cartObservable, inventoryObservable));
+                cmbPaymentType.getValue(), cartTable));
+        btnCheckout.setDisable(ledgerError != null);
 
         HBox bottomPanel = new HBox(10, new Label("Customer Name:"), txtCustomerName,
                 cmbCustomerType, cmbPaymentType, btnCheckout);
@@ -275,95 +394,49 @@ public class App extends Application {
         Scene scene = new Scene(root, 800, 600);
         primaryStage.setScene(scene);
         primaryStage.show();
-    }
 
-    private static void updateCartQuantity(Product item, int newQuantity, TableView<Product> cartTable, TableView<Product> inventoryTable, ObservableList<Product> cartObservable, ObservableList<Product> inventoryObservable) {
-        int oldQuantity = item.getQuantity();
-        int quantityDifference = newQuantity - oldQuantity;
-
-        if (newQuantity > 0) {
-            // Check if we have enough stock for the increase
-            if (quantityDifference > 0) {
-                // Find the product in inventory
-                Product inventoryProduct = null;
-                int inventoryIndex = -1;
-                for (int i = 0; i < inventory.size(); i++) {
-                    if (inventory.get(i).getName().equals(item.getName())) {
-                        inventoryProduct = inventory.get(i);
-                        inventoryIndex = i;
-                        break;
-                    }
-                }
+        if (ledgerError != null) {
+            Platform.runLater(() -> showError("Sales Ledger Unavailable",
+                    "The sales ledger in data/ledger could not be opened, so checkout and refunds are disabled:\n"
+                            + ledgerError + "\nFix the problem and restart the till."));
+        }
+    }
 
-                if (inventoryProduct != null && inventoryProduct.getQuantity() >= quantityDifference) {
-                    // Update cart
-                    Product updatedItem = new Product(item.getName(), item.getPrice(), newQuantity);
-                    int cartIndex = cart.indexOf(item);
-                    cart.set(cartIndex, updatedItem);
-                    cartObservable.set(cartIndex, updatedItem);
-
-                    // Update inventory
-                    Product updatedInventory = new Product(inventoryProduct.getName(),
-                        inventoryProduct.getPrice(),
-                        inventoryProduct.getQuantity() - quantityDifference);
-                    inventory.set(inventoryIndex, updatedInventory);
-                    inventoryObservable.set(inventoryIndex, updatedInventory);
-                } else {
-                    // Not enough stock, reset to old quantity
-                    cartTable.refresh();
-                    Alert alert = new Alert(Alert.AlertType.ERROR);
-                    alert.setTitle("Stock Error");
-                    alert.setHeaderText(null);
-                    alert.setContentText("Not enough stock available!");
-                    alert.showAndWait();
-                }
-            } else if (quantityDifference < 0) {
-                // Quantity decreased, return stock to inventory
-                Product updatedItem = new Product(item.getName(), item.getPrice(), newQuantity);
-                int cartIndex = cart.indexOf(item);
-                cart.set(cartIndex, updatedItem);
-                cartObservable.set(cartIndex, updatedItem);
-
-                // Return stock to inventory
-                for (int i = 0; i < inventory.size(); i++) {
-                    if (inventory.get(i).getName().equals(item.getName())) {
-                        Product inventoryProduct = inventory.get(i);
-                        Product updatedInventory = new Product(inventoryProduct.getName(),
-                            inventoryProduct.getPrice(),
-                            inventoryProduct.getQuantity() - quantityDifference); // quantityDifference is negative, so this adds
-                        inventory.set(i, updatedInventory);
-                        inventoryObservable.set(i, updatedInventory);
-                        break;
-                    }
-                }
-            } else {
-                // Quantity unchanged, just update cart
-                Product updatedItem = new Product(item.getName(), item.getPrice(), newQuantity);
-                int cartIndex = cart.indexOf(item);
-                cart.set(cartIndex, updatedItem);
-                cartObservable.set(cartIndex, updatedItem);
-            }
-        } else {
+    private static void updateCartQuantity(Product item, int newQuantity, TableView<Product> cartTable) {
+        Product current = cart.get(item.getName());
+        if (current == null || newQuantity <= 0) {
             // If invalid quantity, reset
             cartTable.refresh();
+            return;
         }
+
+        // Positive difference takes stock from inventory, negative returns it
+        int quantityDifference = newQuantity - current.getQuantity();
+        if (quantityDifference != 0 && !reservations.reserve(TILL_CART, item.getName(), quantityDifference)) {
+            // Not enough stock, reset to old quantity
+            cartTable.refresh();
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Stock Error");
+            alert.setHeaderText(null);
+            alert.setContentText("Not enough stock available!");
+            alert.showAndWait();
+            return;
+        }
+        putCartItem(new Product(current.getName(), current.getPrice(), newQuantity));
     }
 
-    private static void addToCart(TableView<Product> inventoryTable, ObservableList<Product> inventoryObservable, ObservableList<Product> cartObservable) {
+    private static void addToCart(TableView<Product> inventoryTable) {
         Product selectedProduct = inventoryTable.getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
-            if (selectedProduct.getQuantity() > 0) {
+            // The table may lag the catalog by a frame, so the service decides whether stock is left
+            if (reservations.reserve(TILL_CART, selectedProduct.getName(), 1)) {
                 // Simple add, in real app would handle quantity selection
-                Product cartItem = new Product(selectedProduct.getName(), selectedProduct.getPrice(), 1);
-                cart.add(cartItem);
-                cartObservable.add(cartItem);
-                int inventoryIndex = inventory.indexOf(selectedProduct);
-                if (inventoryIndex >= 0) {
-                    Product updatedProduct = new Product(selectedProduct.getName(), selectedProduct.getPrice(), selectedProduct.getQuantity() - 1);
-                    inventory.set(inventoryIndex, updatedProduct);
-                    inventoryObservable.set(inventoryIndex, updatedProduct);
-                    System.out.println("Added " + cartItem.getName() + " to cart. Cart size: " + cart.size());
-                }
+                Product existing = cart.get(selectedProduct.getName());
+                Product cartItem = existing == null
+                    ? new Product(selectedProduct.getName(), selectedProduct.getPrice(), 1)
+                    : new Product(existing.getName(), existing.getPrice(), existing.getQuantity() + 1);
+                putCartItem(cartItem);
+                System.out.println("Added " + cartItem.getName() + " to cart. Cart size: " + cart.size());
             } else {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Out of Stock");
@@ -380,25 +453,40 @@ public class App extends Application {
         }
     }
 
-    private static void removeFromCart(TableView<Product> cartTable, TableView<Product> inventoryTable, ObservableList<Product> cartObservable, ObservableList<Product> inventoryObservable) {
+    private static void removeFromCart(TableView<Product> cartTable) {
         Product selectedProduct = cartTable.getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
-            cart.remove(selectedProduct);
-            cartObservable.remove(selectedProduct);
-            // Return to inventory
-            for (int i = 0; i < inventory.size(); i++) {
-                if (inventory.get(i).getName().equals(selectedProduct.getName())) {
-                    Product p = inventory.get(i);
-                    Product updated = new Product(p.getName(), p.getPrice(), p.getQuantity() + selectedProduct.getQuantity());
-                    inventory.set(i, updated);
-                    inventoryObservable.set(i, updated);
-                    break;
-                }
+            Product removed = cart.remove(selectedProduct.getName());
+            if (removed != null) {
+                cartUpdates.remove(removed.getName());
+                // Return to inventory
+                reservations.release(TILL_CART, removed.getName());
+                reservations.touch(TILL_CART);
             }
         }
     }
 
-    private static void checkout(String customerName, String customerType, String paymentType, TableView<Product> cartTable, TableView<Product> inventoryTable, ObservableList<Product> cartObservable, ObservableList<Product> inventoryObservable) {
+    private static void putCartItem(Product item) {
+        cart.put(item.getName(), item);
+        cartUpdates.submit(item);
+    }
+
+    // Brings a cart line in line with its hold; returns false if the hold had expired or shrunk
+    private static boolean syncCartItem(String name) {
+        Product current = cart.get(name);
+        if (current == null) return true;
+        int held = reservations.getHeld(TILL_CART, name);
+        if (held == current.getQuantity()) return true;
+        if (held == 0) {
+            cart.remove(name);
+            cartUpdates.remove(name);
+        } else {
+            putCartItem(new Product(current.getName(), current.getPrice(), held));
+        }
+        return false;
+    }
+
+    private static void checkout(String customerName, String customerType, String paymentType, TableView<Product> cartTable) {
         if (cart.isEmpty()) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Empty Cart");
@@ -408,24 +496,35 @@ public class App extends Application {
             return;
         }
 
-        Customer customer = customerType.equals("VIP") ? new VIPCustomer(customerName) : new Customer(customerName);
-        Payment payment = paymentType.equals("Cash") ? new CashPayment() : new CardPayment();
+        // Refresh first so nothing can expire between checking the holds and committing them
+        reservations.touch(TILL_CART);
+        boolean intact = true;
+        for (String name : new ArrayList<>(cart.keySet())) {
+            intact &= syncCartItem(name);
+        }
+        if (!intact) {
+            showError("Cart Expired", "Some items were left in the cart too long and went back to stock. Please review the cart.");
+            return;
+        }
 
-        String saleId = "TXN" + System.currentTimeMillis();
-        Sale sale = new Sale(saleId, customer, cart, payment);
-        sales.add(sale);
+        Customer customer = CustomerRegistry.intern(customerName, customerType);
+        Payment payment = paymentType.equals("Cash") ? CashPayment.INSTANCE : CardPayment.INSTANCE;
 
-        // Save the sale immediately to persist data
+        String saleId = salesService.nextSaleId();
+        // Priced from one catalog snapshot at checkout time
+        Sale sale = new Sale(saleId, customer, productService.priceItems(cart.values()), payment);
+        // Append the sale to the ledger immediately to persist data
         try {
-            new java.io.File("data").mkdirs();
-            StoreUtils.saveSalesToCSV(sales, "data/sales.csv");
+            salesService.addSale(sale);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Save Error");
             alert.setHeaderText(null);
-            alert.setContentText("Warning: Sale recorded but data save failed: " + e.getMessage());
+            alert.setContentText("Sale could not be saved, cart kept: " + e.getMessage());
             alert.showAndWait();
+            return;
         }
+        reservations.commitAll(TILL_CART);
 
         payment.pay(sale.getFinalAmount());
 
@@ -436,8 +535,10 @@ public class App extends Application {
                 sale.getTotalAmount(), sale.getDiscountAmount(), sale.getFinalAmount()));
         alert.showAndWait();
 
+        for (String name : cart.keySet()) {
+            cartUpdates.remove(name);
+        }
         cart.clear();
-        cartObservable.clear();
     }
 
     private static void showAddProductDialog(Stage primaryStage) {
@@ -464,7 +565,7 @@ public class App extends Application {
                 String name = txtName.getText();
                 double price = Double.parseDouble(txtPrice.getText());
                 int qty = Integer.parseInt(txtQty.getText());
-                inventory.add(new Product(name, price, qty));
+                productService.addProduct(new Product(name, price, qty));
                 dialog.close();
             } catch (Exception ex) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -491,20 +592,63 @@ public class App extends Application {
         dialog.showAndWait();
     }
 
+    // Supplier catalog drops can run to millions of rows, so parsing and merging run off the FX thread
+    private static void importCatalog(Stage primaryStage) {
+        javafx.stage.FileChooser chooser = new javafx.stage.FileChooser();
+        chooser.setTitle("Import Catalog");
+        chooser.getExtensionFilters().add(new javafx.stage.FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        java.io.File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) return;
+
+        Thread importer = new Thread(() -> {
+            try {
+                CatalogImporter.Result result = CatalogImporter.parse(file.toPath());
+                productService.addProducts(result.getProducts());
+                StringBuilder message = new StringBuilder(result.toString());
+                for (String error : result.getErrors().subList(0, Math.min(10, result.getErrors().size()))) {
+                    message.append("\n").append(error);
+                }
+                Platform.runLater(() -> showInfo("Import Catalog", message.toString()));
+            } catch (Exception ex) {
+                Platform.runLater(() -> showError("Import Error", "Could not import catalog: " + ex.getMessage()));
+            }
+        }, "catalog-import");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    // Re-reads every compacted day's raw rows in the background and reports any summary that disagrees
+    private static void verifySummaries() {
+        Thread checker = new Thread(() -> {
+            try {
+                List<String> problems = salesService.checkSummaries();
+                String message = problems.isEmpty()
+                        ? "All daily summaries match the raw sales."
+                        : problems.size() + " problem(s):\n" + String.join("\n", problems.subList(0, Math.min(10, problems.size())));
+                Platform.runLater(() -> showInfo("Verify Daily Summaries", message));
+            } catch (Exception ex) {
+                Platform.runLater(() -> showError("Verify Error", "Could not check summaries: " + ex.getMessage()));
+            }
+        }, "summary-check");
+        checker.setDaemon(true);
+        checker.start();
+    }
+
     private static void removeSelectedProduct() {
         // For now, just remove the first item as an example
         // In a real app, you'd need to pass the table or have a way to select
-        if (!inventory.isEmpty()) {
-            inventory.remove(0);
+        List<Product> products = productService.getAllProducts();
+        if (!products.isEmpty()) {
+            productService.removeProduct(products.get(0));
         }
     }
 
     private static void saveData(Stage primaryStage) {
         try {
             new java.io.File("data").mkdirs();
-            StoreUtils.saveProductsToCSV(inventory, "data/products.csv");
-            StoreUtils.saveUsersToCSV(users, "data/users.csv");
-            StoreUtils.saveSalesToCSV(sales, "data/sales.csv");
+            // On-hand stock, so units sitting in open carts are not lost from the file
+            StoreUtils.saveProductsToCSV(productService.getOnHandProducts(), "data/products.csv");
+            credentials.save("data/users.csv");
             Alert alert = new Alert(Alert.AlertType.INFORMATION);
             alert.setTitle("Save Successful");
             alert.setHeaderText(null);
@@ -527,35 +671,345 @@ public class App extends Application {
         // Create a simple table for sales
         TableView<Sale> salesTable = new TableView<>();
         TableColumn<Sale, String> saleIdCol = new TableColumn<>("Sale ID");
-        saleIdCol.setCellValueFactory(new PropertyValueFactory<>("saleId"));
+        saleIdCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getSaleId()));
         TableColumn<Sale, String> customerCol = new TableColumn<>("Customer");
         customerCol.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getCustomer().getName()));
         TableColumn<Sale, String> typeCol = new TableColumn<>("Type");
         typeCol.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getCustomer().getCustomerType()));
         TableColumn<Sale, Double> totalCol = new TableColumn<>("Total");
-        totalCol.setCellValueFactory(new PropertyValueFactory<>("totalAmount"));
+        totalCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getTotalAmount()));
         TableColumn<Sale, Double> discountCol = new TableColumn<>("Discount");
-        discountCol.setCellValueFactory(new PropertyValueFactory<>("discountAmount"));
+        discountCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getDiscountAmount()));
         TableColumn<Sale, Double> finalCol = new TableColumn<>("Final");
-        finalCol.setCellValueFactory(new PropertyValueFactory<>("finalAmount"));
+        finalCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getFinalAmount()));
         TableColumn<Sale, String> paymentCol = new TableColumn<>("Payment");
         paymentCol.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getPayment().getClass().getSimpleName()));
         TableColumn<Sale, String> dateCol = new TableColumn<>("Date");
         dateCol.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getTimestamp().toString().replace("T", " ")));
 
         salesTable.getColumns().addAll(saleIdCol, customerCol, typeCol, totalCol, discountCol, finalCol, paymentCol, dateCol);
-        salesTable.setItems(FXCollections.observableArrayList(sales));
+
+        // Filters
+        DatePicker dpFrom = new DatePicker(java.time.LocalDate.now().minusDays(RESIDENT_SALES_DAYS - 1L));
+        DatePicker dpTo = new DatePicker(java.time.LocalDate.now());
+        TextField txtCustomer = new TextField();
+        txtCustomer.setPromptText("Customer");
+        ComboBox<String> cmbType = new ComboBox<>(FXCollections.observableArrayList("Any", "Regular", "VIP"));
+        cmbType.setValue("Any");
+        ComboBox<String> cmbPayment = new ComboBox<>(FXCollections.observableArrayList("Any", "Cash", "Card"));
+        cmbPayment.setValue("Any");
+        TextField txtMin = new TextField();
+        txtMin.setPromptText("Min Rs.");
+        txtMin.setPrefWidth(80);
+        TextField txtMax = new TextField();
+        txtMax.setPromptText("Max Rs.");
+        txtMax.setPrefWidth(80);
+        ComboBox<SalesQuery.Sort> cmbSort = new ComboBox<>(FXCollections.observableArrayList(SalesQuery.Sort.values()));
+        cmbSort.setValue(SalesQuery.Sort.NEWEST_FIRST);
+        Button btnSearch = new Button("Search");
+
+        // Only the visible page is ever loaded
+        final int pageSize = 100;
+        Pagination pagination = new Pagination(1, 0);
+        Label matchesLabel = new Label();
+        java.util.function.Supplier<SalesQuery> filters = () -> new SalesQuery()
+                .between(dpFrom.getValue() == null ? null : dpFrom.getValue().atStartOfDay(),
+                        dpTo.getValue() == null ? null : dpTo.getValue().plusDays(1).atStartOfDay())
+                .customer(txtCustomer.getText())
+                .customerType("Any".equals(cmbType.getValue()) ? null : cmbType.getValue())
+                .paymentType("Any".equals(cmbPayment.getValue()) ? null : cmbPayment.getValue())
+                .amountBetween(parseAmount(txtMin.getText()), parseAmount(txtMax.getText()))
+                .sortBy(cmbSort.getValue());
+
+        // Queries may read older days from disk, so they run in the background; a result that
+        // arrives after a newer search or page change is dropped
+        SalesQuery[] current = {null};
+        btnSearch.setOnAction(e -> {
+            SalesQuery query;
+            try {
+                query = filters.get();
+            } catch (Exception ex) {
+                showError("Search Error", "Could not search sales: " + ex.getMessage());
+                return;
+            }
+            current[0] = query;
+            btnSearch.setDisable(true);
+            matchesLabel.setText("Searching...");
+            runInBackground("sales-search", () -> salesService.querySales(query.page(0, pageSize)), firstPage -> {
+                btnSearch.setDisable(false);
+                if (current[0] != query) return;
+                matchesLabel.setText("Matching sales: " + firstPage.getTotalMatches());
+                SalesQuery.Result[] pending = {firstPage};
+                pagination.setPageCount(Math.max(1, (firstPage.getTotalMatches() + pageSize - 1) / pageSize));
+                pagination.setCurrentPageIndex(0);
+                pagination.setPageFactory(pageIndex -> {
+                    SalesQuery.Result ready = pending[0];
+                    pending[0] = null;
+                    if (ready != null) {
+                        salesTable.setItems(FXCollections.observableArrayList(ready.getSales()));
+                        return salesTable;
+                    }
+                    salesTable.setItems(FXCollections.observableArrayList());
+                    runInBackground("sales-page", () -> salesService.querySales(query.page(pageIndex, pageSize)), result -> {
+                        if (current[0] == query && pagination.getCurrentPageIndex() == pageIndex) {
+                            salesTable.setItems(FXCollections.observableArrayList(result.getSales()));
+                        }
+                    }, ex -> showError("Search Error", "Could not load page: " + ex.getMessage()));
+                    return salesTable;
+                });
+            }, ex -> {
+                btnSearch.setDisable(false);
+                matchesLabel.setText("");
+                showError("Search Error", "Could not search sales: " + ex.getMessage());
+            });
+        });
+
+        HBox filterRow1 = new HBox(10, new Label("From:"), dpFrom, new Label("To:"), dpTo, txtCustomer);
+        HBox filterRow2 = new HBox(10, cmbType, cmbPayment, txtMin, txtMax, cmbSort, btnSearch);
 
         // Summary
-        double totalRevenue = sales.stream().mapToDouble(Sale::getFinalAmount).sum();
-        int totalSalesCount = sales.size();
+        double totalRevenue = salesService.getTotalRevenue();
+        int totalSalesCount = salesService.getTotalSalesCount();
         Label summaryLabel = new Label("Total Sales: " + totalSalesCount + " | Total Revenue: Rs. " + String.format("%.2f", totalRevenue));
 
-        VBox layout = new VBox(10, salesTable, summaryLabel);
+        VBox layout = new VBox(10, filterRow1, filterRow2, pagination, matchesLabel, summaryLabel);
+        VBox.setVgrow(pagination, Priority.ALWAYS);
         layout.setPadding(new Insets(10));
+        btnSearch.fire();
 
-        Scene scene = new Scene(layout, 800, 400);
+        Scene scene = new Scene(layout, 900, 550);
         dialog.setScene(scene);
         dialog.showAndWait();
     }
+
+    // Blank means no bound
+    private static Double parseAmount(String text) {
+        return text == null || text.trim().isEmpty() ? null : Double.parseDouble(text.trim());
+    }
+
+    private static void showExportDialog(Stage primaryStage) {
+        Stage dialog = new Stage();
+        dialog.initModality(Modality.APPLICATION_MODAL);
+        dialog.setTitle("Export Reports");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+
+        DatePicker dpFrom = new DatePicker(java.time.LocalDate.now());
+        DatePicker dpTo = new DatePicker(java.time.LocalDate.now());
+        ComboBox<SalesExporter.Format> cmbFormat = new ComboBox<>(FXCollections.observableArrayList(SalesExporter.Format.values()));
+        cmbFormat.setValue(SalesExporter.Format.CSV);
+        Button btnZReport = new Button("Z-Report (From date)");
+        Button btnPeriod = new Button("Period Report");
+        Button btnExport = new Button("Export Sales");
+        Button btnClose = new Button("Close");
+
+        // Exports stream from disk in the background; the buttons stay off until one finishes
+        List<Button> exportButtons = List.of(btnZReport, btnPeriod, btnExport);
+        Consumer<Boolean> busy = running -> exportButtons.forEach(b -> b.setDisable(running));
+
+        btnZReport.setOnAction(e -> {
+            java.time.LocalDate day = dpFrom.getValue();
+            SalesExporter.Format format = cmbFormat.getValue();
+            java.nio.file.Path target = exportPath("zreport-" + day, format);
+            busy.accept(true);
+            runInBackground("export-zreport", () -> salesService.exportZReport(day, target, format), summary -> {
+                busy.accept(false);
+                showInfo("Export Successful", summary + "\nWritten to " + target);
+            }, ex -> {
+                busy.accept(false);
+                showError("Export Error", "Error exporting Z-report: " + ex.getMessage());
+            });
+        });
+
+        btnPeriod.setOnAction(e -> {
+            java.time.LocalDate from = dpFrom.getValue();
+            java.time.LocalDate to = dpTo.getValue();
+            SalesExporter.Format format = cmbFormat.getValue();
+            java.nio.file.Path target = exportPath("report-" + from + "_" + to, format);
+            busy.accept(true);
+            runInBackground("export-period", () -> salesService.exportPeriodReport(from, to, target, format), summary -> {
+                busy.accept(false);
+                showInfo("Export Successful", summary + "\nWritten to " + target);
+            }, ex -> {
+                busy.accept(false);
+                showError("Export Error", "Error exporting period report: " + ex.getMessage());
+            });
+        });
+
+        btnExport.setOnAction(e -> {
+            java.time.LocalDate from = dpFrom.getValue();
+            java.time.LocalDate to = dpTo.getValue();
+            SalesExporter.Format format = cmbFormat.getValue();
+            java.nio.file.Path target = exportPath("sales-" + from + "_" + to, format);
+            busy.accept(true);
+            runInBackground("export-sales",
+                    () -> salesService.exportSales(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), target, format), rows -> {
+                busy.accept(false);
+                showInfo("Export Successful", rows + " sales written to " + target);
+            }, ex -> {
+                busy.accept(false);
+                showError("Export Error", "Error exporting sales: " + ex.getMessage());
+            });
+        });
+
+        btnClose.setOnAction(e -> dialog.close());
+
+        grid.add(new Label("From / Day:"), 0, 0);
+        grid.add(dpFrom, 1, 0);
+        grid.add(new Label("To:"), 0, 1);
+        grid.add(dpTo, 1, 1);
+        grid.add(new Label("Format:"), 0, 2);
+        grid.add(cmbFormat, 1, 2);
+        grid.add(new HBox(10, btnZReport, btnPeriod, btnExport, btnClose), 0, 3, 2, 1);
+
+        Scene scene = new Scene(grid, 520, 220);
+        dialog.setScene(scene);
+        dialog.showAndWait();
+    }
+
+    private static void showRefundDialog(Stage primaryStage) {
+        Stage dialog = new Stage();
+        dialog.initModality(Modality.APPLICATION_MODAL);
+        dialog.setTitle("Refund Sale");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+
+        TextField txtSaleId = new TextField();
+        Label lblSale = new Label();
+        Button btnFind = new Button("Find");
+        Button btnRefund = new Button("Refund");
+        Button btnClose = new Button("Close");
+
+        // A lookup of an older sale may inflate a closed day's segment, so both run off the FX thread
+        Consumer<Boolean> busy = b -> {
+            btnFind.setDisable(b);
+            btnRefund.setDisable(b);
+        };
+
+        btnFind.setOnAction(e -> {
+            String saleId = txtSaleId.getText().trim();
+            busy.accept(true);
+            runInBackground("sale-lookup", () -> salesService.findSale(saleId), sale -> {
+                busy.accept(false);
+                lblSale.setText(sale == null ? "Sale not found." : sale + "\n" + sale.getTimestamp().toString().replace("T", " "));
+            }, ex -> {
+                busy.accept(false);
+                showError("Lookup Error", "Error looking up sale: " + ex.getMessage());
+            });
+        });
+
+        btnRefund.setOnAction(e -> {
+            String saleId = txtSaleId.getText().trim();
+            int[] restocked = {0};
+            busy.accept(true);
+            runInBackground("sale-refund", () -> salesService.refundSale(saleId, item -> {
+                if (!productService.adjustStock(item.getName(), item.getQuantity())) return false;
+                restocked[0] += item.getQuantity();
+                return true;
+            }), refund -> {
+                busy.accept(false);
+                Sale sale = refund.getSale();
+                String message = String.format("Refunded Rs. %.2f as %s", -sale.getFinalAmount(), sale.getSaleId());
+                if (!refund.getNotRestocked().isEmpty()) {
+                    // Products that left the catalog (or were renamed) since the sale
+                    StringBuilder lines = new StringBuilder();
+                    for (Product item : refund.getNotRestocked()) {
+                        lines.append("\n  ").append(item.getQuantity()).append(" x ").append(item.getName());
+                    }
+                    showError("Refund Recorded", message + String.format("\n%d item(s) returned to stock.", restocked[0])
+                            + "\n\nThese lines were NOT restocked; they are no longer in the catalog. "
+                            + "Return the goods to stock by hand:" + lines);
+                } else if (restocked[0] == 0) {
+                    // Sales recorded before line items were stored
+                    showError("Refund Recorded", message + "\n\nStock was NOT restored: the sale's items are not "
+                            + "on record. Return the goods to stock by hand.");
+                } else {
+                    showInfo("Refund Successful", message + String.format("\n%d item(s) returned to stock.", restocked[0]));
+                }
+                dialog.close();
+            }, ex -> {
+                busy.accept(false);
+                showError("Refund Error", "Refund failed: " + ex.getMessage());
+            });
+        });
+
+        btnClose.setOnAction(e -> dialog.close());
+
+        grid.add(new Label("Sale ID:"), 0, 0);
+        grid.add(txtSaleId, 1, 0);
+        grid.add(btnFind, 2, 0);
+        grid.add(lblSale, 0, 1, 3, 1);
+        grid.add(new HBox(10, btnRefund, btnClose), 0, 2, 3, 1);
+
+        Scene scene = new Scene(grid, 520, 200);
+        dialog.setScene(scene);
+        dialog.showAndWait();
+    }
+
+    private static java.nio.file.Path exportPath(String baseName, SalesExporter.Format format) {
+        java.io.File exportDir = new java.io.File("data/exports");
+        exportDir.mkdirs();
+        String extension = format == SalesExporter.Format.CSV ? ".csv" : ".json";
+        return new java.io.File(exportDir, baseName + extension).toPath();
+    }
+
+    // Lets in-flight API checkouts finish and queued journal records reach the standbys before
+    // holds are released and the ledger is closed
+    private static void shutdown() {
+        if (apiServer != null) apiServer.stop();
+        reservations.releaseEverything();
+        if (replicationPrimary != null) {
+            try {
+                replicationPrimary.close();
+            } catch (java.io.IOException e) {
+                System.err.println("Warning: Could not stop replication: " + e.getMessage());
+            }
+        }
+        if (compactor != null) compactor.close();
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (java.io.IOException e) {
+                System.err.println("Warning: Could not close the sales ledger: " + e.getMessage());
+            }
+        }
+    }
+
+    // Runs work on a daemon thread; the result or the failure is handed back on the FX thread
+    private static <T> void runInBackground(String name, java.util.concurrent.Callable<T> work,
+                                            Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(ev -> onSuccess.accept(task.getValue()));
+        task.setOnFailed(ev -> onFailure.accept(task.getException()));
+        Thread worker = new Thread(task, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private static void showInfo(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    private static void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
 }
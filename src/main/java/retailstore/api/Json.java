@@ -0,0 +1,169 @@
+package api;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import model.DailySummary;
+import model.Product;
+import model.Sale;
+import model.User;
+import service.ReservationManager;
+
+// Minimal JSON rendering for API responses
+class Json {
+    static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        string(sb, message);
+        return sb.append('}').toString();
+    }
+
+    static String products(List<Product> products) {
+        StringBuilder sb = new StringBuilder(products.size() * 64 + 2).append('[');
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) sb.append(',');
+            product(sb, products.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    static String product(Product p) {
+        StringBuilder sb = new StringBuilder(64);
+        product(sb, p);
+        return sb.toString();
+    }
+
+    static String cart(String cartId, List<Product> items) {
+        StringBuilder sb = new StringBuilder(items.size() * 64 + 64).append("{\"cartId\":");
+        string(sb, cartId);
+        sb.append(",\"items\":[");
+        double total = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) sb.append(',');
+            product(sb, items.get(i));
+            total += items.get(i).getTotal();
+        }
+        sb.append("],\"total\":");
+        amount(sb, total);
+        return sb.append('}').toString();
+    }
+
+    static String sale(Sale s) {
+        StringBuilder sb = new StringBuilder(256).append("{\"saleId\":");
+        string(sb, s.getSaleId());
+        sb.append(",\"customerType\":");
+        string(sb, s.getCustomer().getCustomerType());
+        sb.append(",\"customerName\":");
+        string(sb, s.getCustomer().getName());
+        sb.append(",\"totalAmount\":");
+        amount(sb, s.getTotalAmount());
+        sb.append(",\"discountAmount\":");
+        amount(sb, s.getDiscountAmount());
+        sb.append(",\"finalAmount\":");
+        amount(sb, s.getFinalAmount());
+        sb.append(",\"paymentType\":");
+        string(sb, s.getPayment().getClass().getSimpleName());
+        sb.append(",\"timestamp\":");
+        string(sb, s.getTimestamp().toString());
+        sb.append(",\"items\":[");
+        List<Product> items = s.getProducts();
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) sb.append(',');
+            product(sb, items.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    static String summary(DailySummary summary) {
+        StringBuilder sb = new StringBuilder(512).append("{\"date\":");
+        string(sb, summary.getPeriodLabel());
+        sb.append(',');
+        totals(sb, summary.getSaleCount(), summary.getTotalAmount(), summary.getDiscountAmount(), summary.getFinalAmount());
+        sb.append(",\"byPaymentType\":");
+        breakdowns(sb, summary.getByPaymentType());
+        sb.append(",\"byCustomerType\":");
+        breakdowns(sb, summary.getByCustomerType());
+        return sb.append('}').toString();
+    }
+
+    static String reservations(ReservationManager reservations, int openCarts) {
+        StringBuilder sb = new StringBuilder(256).append("{\"openCarts\":").append(openCarts)
+                .append(",\"activeHolds\":").append(reservations.getActiveHolds())
+                .append(",\"reservedUnits\":").append(reservations.getReservedUnits())
+                .append(",\"expiredHolds\":").append(reservations.getExpiredHolds())
+                .append(",\"expiredUnits\":").append(reservations.getExpiredUnits())
+                .append(",\"byProduct\":{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> e : reservations.getReservedByProduct().entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            string(sb, e.getKey());
+            sb.append(':').append(e.getValue());
+        }
+        return sb.append("}}").toString();
+    }
+
+    static String session(String token, User user) {
+        StringBuilder sb = new StringBuilder(128).append('{');
+        if (token != null) {
+            sb.append("\"token\":");
+            string(sb, token);
+            sb.append(',');
+        }
+        sb.append("\"username\":");
+        string(sb, user.getUsername());
+        sb.append(",\"role\":");
+        string(sb, user.getRole());
+        return sb.append('}').toString();
+    }
+
+    private static void breakdowns(StringBuilder sb, Map<String, DailySummary.Breakdown> breakdowns) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, DailySummary.Breakdown> e : breakdowns.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            DailySummary.Breakdown b = e.getValue();
+            string(sb, e.getKey());
+            sb.append(":{");
+            totals(sb, b.getCount(), b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount());
+            sb.append('}');
+        }
+        sb.append('}');
+    }
+
+    private static void totals(StringBuilder sb, int count, double total, double discount, double fin) {
+        sb.append("\"count\":").append(count).append(",\"totalAmount\":");
+        amount(sb, total);
+        sb.append(",\"discountAmount\":");
+        amount(sb, discount);
+        sb.append(",\"finalAmount\":");
+        amount(sb, fin);
+    }
+
+    private static void product(StringBuilder sb, Product p) {
+        sb.append("{\"name\":");
+        string(sb, p.getName());
+        sb.append(",\"price\":");
+        amount(sb, p.getPrice());
+        sb.append(",\"quantity\":").append(p.getQuantity()).append('}');
+    }
+
+    private static void amount(StringBuilder sb, double amount) {
+        sb.append(String.format(Locale.ROOT, "%.2f", amount));
+    }
+
+    private static void string(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
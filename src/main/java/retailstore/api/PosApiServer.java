@@ -0,0 +1,419 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import ledger.HistoryCompactor;
+import ledger.SalesLedger;
+import model.Product;
+import model.Sale;
+import model.User;
+import replication.ReplicationPrimary;
+import service.CartService;
+import service.CredentialStore;
+import service.ProductService;
+import service.ReservationManager;
+import service.SalesService;
+import util.StoreUtils;
+
+/**
+ * Embedded HTTP/JSON API for scanners and self-checkout kiosks, served over the same
+ * ProductService and SalesService as the till.
+ *
+ * GET    /api/products                  list the catalog
+ * GET    /api/products/{name}           look up one product
+ * POST   /api/carts                     open a cart (cart and sales calls need "Authorization: Bearer {token}";
+ *                                       a cart is only visible to the session that opened it)
+ * GET    /api/carts/{id}                show a cart
+ * DELETE /api/carts/{id}                discard a cart (stock goes back)
+ * POST   /api/carts/{id}/items?product=&quantity=
+ * DELETE /api/carts/{id}/items?product=
+ * POST   /api/carts/{id}/checkout?customer=&customerType=&payment=Cash|Card
+ * GET    /api/sales/{saleId}            look up a sale
+ * GET    /api/sales/summary?date=       Z-report totals for a day
+ * GET    /api/sales/summary?from=&to=   totals for a period (both days included)
+ * GET    /api/reservations              stock held by open carts, and expiry counts
+ * POST   /api/sessions                  log a lane in (form body: username=&password=)
+ * GET    /api/sessions/{token}          who a session token belongs to
+ * DELETE /api/sessions/{token}          log out
+ *
+ * Requests run on virtual threads when the JDK has them (21+), otherwise on a fixed pool.
+ * Logins run the slow password hash, so only a few run at once (503 when all are busy) and
+ * each client address gets a limited number of attempts per minute (429 beyond that).
+ */
+public class PosApiServer {
+    public static final int DEFAULT_PORT = 8085;
+    private static final int BACKLOG = 4096;
+    private static final int LOGIN_WAIT_MILLIS = 2000;
+    private static final long LOGIN_WINDOW_MILLIS = 60_000;
+    private static final int LOGIN_ATTEMPTS_PER_MINUTE = 10;
+    private static final int LOGIN_WINDOW_PURGE_THRESHOLD = 4096;
+
+    // Login attempts from one client address in the current minute
+    private static final class LoginWindow {
+        long startedAt;
+        int attempts;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ProductService productService;
+    private final SalesService salesService;
+    private final CartService cartService;
+    private final CredentialStore credentials;
+    // Bounds concurrent password hashes, so a login burst cannot take every CPU from checkout
+    private final Semaphore loginPermits = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private final Map<String, LoginWindow> loginWindows = new ConcurrentHashMap<>();
+
+    public PosApiServer(InetSocketAddress address, ProductService productService, SalesService salesService) throws IOException {
+        this(address, productService, salesService,
+                new ReservationManager(productService, ReservationManager.DEFAULT_TTL_MILLIS));
+    }
+
+    public PosApiServer(InetSocketAddress address, ProductService productService, SalesService salesService,
+                        ReservationManager reservations) throws IOException {
+        this(address, productService, salesService, reservations, new CredentialStore());
+    }
+
+    public PosApiServer(InetSocketAddress address, ProductService productService, SalesService salesService,
+                        ReservationManager reservations, CredentialStore credentials) throws IOException {
+        this.productService = productService;
+        this.salesService = salesService;
+        this.cartService = new CartService(productService, salesService, reservations);
+        this.credentials = credentials;
+        // Small JSON replies otherwise wait on Nagle/delayed-ACK; must be set before the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public CartService getCartService() {
+        return cartService;
+    }
+
+    static ExecutorService newRequestExecutor() {
+        return newVirtualThreadExecutor(() ->
+                Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 4)));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively so the code still builds for Java 11
+    static ExecutorService newVirtualThreadExecutor(Supplier<ExecutorService> fallback) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return fallback.get();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            String resource = path.length > 2 ? path[2] : "";
+            if ("products".equals(resource)) {
+                handleProducts(exchange, method, path);
+            } else if ("carts".equals(resource)) {
+                handleCarts(exchange, method, path, query);
+            } else if ("sales".equals(resource)) {
+                handleSales(exchange, method, path, query);
+            } else if ("sessions".equals(resource)) {
+                handleSessions(exchange, method, path);
+            } else if ("reservations".equals(resource) && "GET".equals(method)) {
+                send(exchange, 200, Json.reservations(cartService.getReservations(), cartService.getOpenCartCount()));
+            } else {
+                send(exchange, 404, Json.error("Not found"));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            send(exchange, 400, Json.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            send(exchange, 409, Json.error(e.getMessage()));
+        } catch (Exception e) {
+            send(exchange, 500, Json.error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleProducts(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (!"GET".equals(method)) {
+            send(exchange, 405, Json.error("Method not allowed"));
+        } else if (path.length == 3) {
+            send(exchange, 200, Json.products(productService.getAllProducts()));
+        } else {
+            Product product = productService.findProductByName(path[3]);
+            if (product == null) {
+                send(exchange, 404, Json.error("Unknown product: " + path[3]));
+            } else {
+                send(exchange, 200, Json.product(product));
+            }
+        }
+    }
+
+    private void handleCarts(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws IOException {
+        String token = requireSession(exchange);
+        if (token == null) return;
+        if (path.length == 3) {
+            if (!"POST".equals(method)) {
+                send(exchange, 405, Json.error("Method not allowed"));
+                return;
+            }
+            String cartId = cartService.createCart(token);
+            send(exchange, 201, Json.cart(cartId, cartService.getCart(cartId)));
+            return;
+        }
+
+        String cartId = path[3];
+        // Another session's cart looks exactly like a missing one
+        if (!cartService.isOwnedBy(cartId, token)) {
+            send(exchange, 404, Json.error("Unknown cart: " + cartId));
+            return;
+        }
+        String action = path.length > 4 ? path[4] : "";
+        if (action.isEmpty() && "GET".equals(method)) {
+            send(exchange, 200, Json.cart(cartId, cartService.getCart(cartId)));
+        } else if (action.isEmpty() && "DELETE".equals(method)) {
+            cartService.discardCart(cartId);
+            send(exchange, 204, null);
+        } else if ("items".equals(action) && "POST".equals(method)) {
+            String product = require(query, "product");
+            int quantity = Integer.parseInt(query.getOrDefault("quantity", "1"));
+            if (!cartService.addItem(cartId, product, quantity)) {
+                send(exchange, 409, Json.error("Not enough stock available: " + product));
+                return;
+            }
+            send(exchange, 200, Json.cart(cartId, cartService.getCart(cartId)));
+        } else if ("items".equals(action) && "DELETE".equals(method)) {
+            String product = require(query, "product");
+            if (!cartService.removeItem(cartId, product)) {
+                send(exchange, 404, Json.error("Not in cart: " + product));
+                return;
+            }
+            send(exchange, 200, Json.cart(cartId, cartService.getCart(cartId)));
+        } else if ("checkout".equals(action) && "POST".equals(method)) {
+            Sale sale = cartService.checkout(cartId,
+                    query.getOrDefault("customer", "Walk-in"),
+                    query.getOrDefault("customerType", "Regular"),
+                    query.getOrDefault("payment", "Cash"));
+            sale.getPayment().pay(sale.getFinalAmount());
+            send(exchange, 200, Json.sale(sale));
+        } else {
+            send(exchange, 405, Json.error("Method not allowed"));
+        }
+    }
+
+    // Sales and summaries show customer names and revenue, so they need a session like carts do
+    private void handleSales(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws IOException {
+        if (requireSession(exchange) == null) return;
+        if (!"GET".equals(method) || path.length != 4) {
+            send(exchange, 405, Json.error("Method not allowed"));
+        } else if ("summary".equals(path[3]) && query.containsKey("from")) {
+            LocalDate from = LocalDate.parse(query.get("from"));
+            LocalDate to = LocalDate.parse(query.getOrDefault("to", LocalDate.now().toString()));
+            if (to.isBefore(from)) throw new IllegalArgumentException("'to' is before 'from'");
+            send(exchange, 200, Json.summary(salesService.getPeriodSummary(from, to)));
+        } else if ("summary".equals(path[3])) {
+            LocalDate day = LocalDate.parse(query.getOrDefault("date", LocalDate.now().toString()));
+            send(exchange, 200, Json.summary(salesService.getDailySummary(day)));
+        } else {
+            Sale sale = salesService.findSale(path[3]);
+            if (sale == null) {
+                send(exchange, 404, Json.error("Unknown sale: " + path[3]));
+            } else {
+                send(exchange, 200, Json.sale(sale));
+            }
+        }
+    }
+
+    private void handleSessions(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 3 && "POST".equals(method)) {
+            // Credentials come in the body so they stay out of URLs and access logs
+            Map<String, String> form = parseQuery(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            String username = require(form, "username");
+            String password = require(form, "password");
+            if (!allowLoginAttempt(exchange.getRemoteAddress().getAddress().getHostAddress())) {
+                exchange.getResponseHeaders().set("Retry-After", "60");
+                send(exchange, 429, Json.error("Too many login attempts"));
+                return;
+            }
+            try {
+                if (!loginPermits.tryAcquire(LOGIN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, Json.error("Login busy, try again"));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, Json.error("Login busy, try again"));
+                return;
+            }
+            User user;
+            try {
+                user = credentials.authenticate(username, password);
+            } finally {
+                loginPermits.release();
+            }
+            if (user == null) {
+                send(exchange, 401, Json.error("Invalid credentials"));
+            } else {
+                send(exchange, 201, Json.session(credentials.openSession(user), user));
+            }
+        } else if (path.length == 4 && "GET".equals(method)) {
+            User user = credentials.getSessionUser(path[3]);
+            if (user == null) {
+                send(exchange, 401, Json.error("Session expired or unknown"));
+            } else {
+                send(exchange, 200, Json.session(null, user));
+            }
+        } else if (path.length == 4 && "DELETE".equals(method)) {
+            credentials.closeSession(path[3]);
+            send(exchange, 204, null);
+        } else {
+            send(exchange, 405, Json.error("Method not allowed"));
+        }
+    }
+
+    // Fixed one-minute window per client address
+    private boolean allowLoginAttempt(String client) {
+        long now = System.currentTimeMillis();
+        if (loginWindows.size() >= LOGIN_WINDOW_PURGE_THRESHOLD) {
+            loginWindows.values().removeIf(w -> now - w.startedAt >= LOGIN_WINDOW_MILLIS);
+        }
+        LoginWindow window = loginWindows.computeIfAbsent(client, k -> new LoginWindow());
+        synchronized (window) {
+            if (now - window.startedAt >= LOGIN_WINDOW_MILLIS) {
+                window.startedAt = now;
+                window.attempts = 0;
+            }
+            return ++window.attempts <= LOGIN_ATTEMPTS_PER_MINUTE;
+        }
+    }
+
+    // The caller's session token, or null after answering 401 when it has no live session
+    private String requireSession(HttpExchange exchange) throws IOException {
+        String token = bearerToken(exchange);
+        if (token != null && credentials.getSessionUser(token) != null) return token;
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+        send(exchange, 401, Json.error("Log in first: POST /api/sessions, then send Authorization: Bearer {token}"));
+        return null;
+    }
+
+    // The token of an "Authorization: Bearer" header, or null
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return header.substring(7).trim();
+    }
+
+    private static String require(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Headless lane: serves the API over data/ without the JavaFX window.
+    // Usage: PosApiServer [port] [bindAddress]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String host = args.length > 1 ? args[1] : "127.0.0.1";
+
+        ProductService productService = new ProductService();
+        productService.addProducts(StoreUtils.loadProductsFromCSV("data/products.csv"));
+        SalesLedger ledger = new SalesLedger(Paths.get("data/ledger"));
+        Path legacySales = Paths.get("data/sales.csv");
+        if (ledger.isEmpty() && Files.exists(legacySales)) {
+            ledger.importLegacyCSV(legacySales);
+        }
+        SalesService salesService = new SalesService(ledger, 1);
+        new HistoryCompactor(ledger, HistoryCompactor.DEFAULT_INTERVAL_MINUTES);
+        CredentialStore credentials = new CredentialStore();
+        credentials.load("data/users.csv");
+        credentials.migratePlaintext("data/users.csv");
+
+        PosApiServer server = new PosApiServer(new InetSocketAddress(host, port), productService, salesService,
+                new ReservationManager(productService, ReservationManager.DEFAULT_TTL_MILLIS), credentials);
+        String replicationPort = System.getProperty("retailstore.replication.port");
+        ReplicationPrimary primary = replicationPort == null ? null
+                : new ReplicationPrimary(new InetSocketAddress(host, Integer.parseInt(replicationPort)), productService, salesService);
+        if (primary != null) System.out.println("Replication primary listening on port " + primary.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            server.getCartService().getReservations().releaseEverything();
+            try {
+                if (primary != null) primary.close();
+                StoreUtils.saveProductsToCSV(productService.getOnHandProducts(), "data/products.csv");
+                ledger.close();
+            } catch (IOException e) {
+                System.err.println("Warning: Could not save data on shutdown: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("POS API listening on http://" + host + ":" + server.getAddress().getPort() + "/api/");
+    }
+}
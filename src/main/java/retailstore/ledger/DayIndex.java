@@ -0,0 +1,128 @@
+package ledger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import model.Sale;
+
+/**
+ * Row index of one closed (compressed) segment, written when the day is compacted.
+ *
+ * One fixed-width record per sale: time, final amount, hashes of the customer key and of
+ * the customer and payment types, and the row's byte offset in the segment. History
+ * queries filter and rank these records and inflate only the rows of the page they show,
+ * so older days need neither resident Sales nor a full scan per page.
+ */
+public final class DayIndex {
+    private static final int MAGIC = 0x52494458; // "RIDX"
+    private static final int HEADER_BYTES = 8;   // magic, count
+    private static final int RECORD_BYTES = 40;  // time, amount, customer, offset, customer type, payment type
+
+    // One indexed row, with the customer and types hashed as by customerHash and typeHash
+    public interface RowVisitor {
+        void row(LocalDate day, long time, double finalAmount, long customerHash, int customerTypeHash,
+                 int paymentTypeHash, long offset);
+    }
+
+    private DayIndex() {
+    }
+
+    // Same key the resident index uses: names match ignoring case and surrounding spaces
+    public static String customerKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 64-bit FNV-1a of the customer key, so a collision between two customers is not a concern
+    public static long customerHash(String name) {
+        String key = customerKey(name);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    public static int typeHash(String type) {
+        return type.hashCode();
+    }
+
+    // Sortable time key with the sale's full precision
+    public static long timeKey(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + t.getNano();
+    }
+
+    // Number of records in the file, or -1 if it is missing or damaged
+    static int count(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (ch.read(header, 0) != HEADER_BYTES) return -1;
+            int count = header.getInt(4);
+            if (header.getInt(0) != MAGIC || count < 0 || ch.size() != HEADER_BYTES + (long) count * RECORD_BYTES) return -1;
+            return count;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Visits the records of one file, newest row first if asked
+    static void visit(Path file, LocalDate day, boolean newestFirst, RowVisitor visitor) throws IOException {
+        ByteBuffer map;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        int count = map.getInt(4);
+        for (int i = 0; i < count; i++) {
+            int pos = HEADER_BYTES + (newestFirst ? count - 1 - i : i) * RECORD_BYTES;
+            visitor.row(day, map.getLong(pos), map.getDouble(pos + 8), map.getLong(pos + 16),
+                    map.getInt(pos + 32), map.getInt(pos + 36), map.getLong(pos + 24));
+        }
+    }
+
+    // Collects the records of one segment while it is read, then writes them in one go
+    static final class Writer {
+        private ByteBuffer records = ByteBuffer.allocate(HEADER_BYTES + 1024 * RECORD_BYTES);
+        private int count;
+
+        Writer() {
+            records.position(HEADER_BYTES);
+        }
+
+        void add(Sale sale, long offset) {
+            if (records.remaining() < RECORD_BYTES) {
+                ByteBuffer grown = ByteBuffer.allocate(records.capacity() * 2);
+                records.flip();
+                grown.put(records);
+                records = grown;
+            }
+            records.putLong(timeKey(sale.getTimestamp()));
+            records.putDouble(sale.getFinalAmount());
+            records.putLong(customerHash(sale.getCustomer().getName()));
+            records.putLong(offset);
+            records.putInt(typeHash(sale.getCustomer().getCustomerType()));
+            records.putInt(typeHash(sale.getPayment().getClass().getSimpleName()));
+            count++;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        // The caller writes a temporary file and moves it into place, so readers only see complete indexes
+        void writeTo(Path file) throws IOException {
+            records.putInt(0, MAGIC);
+            records.putInt(4, count);
+            records.flip();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (records.hasRemaining()) ch.write(records);
+            }
+        }
+    }
+}
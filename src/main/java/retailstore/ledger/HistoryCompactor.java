@@ -0,0 +1,39 @@
+package ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Folds closed ledger days into daily summaries in the background: once at start-up, then periodically
+public class HistoryCompactor implements Closeable {
+    public static final long DEFAULT_INTERVAL_MINUTES = 60;
+
+    private final SalesLedger ledger;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ledger-compaction");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public HistoryCompactor(SalesLedger ledger, long intervalMinutes) {
+        this.ledger = ledger;
+        scheduler.scheduleWithFixedDelay(this::compact, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    private void compact() {
+        try {
+            int days = ledger.compactClosedDays();
+            if (days > 0) System.out.println("Compacted " + days + " closed sales day(s) into daily summaries");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Sales history compaction failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
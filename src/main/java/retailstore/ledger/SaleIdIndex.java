@@ -0,0 +1,197 @@
+package ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+import model.Sale;
+
+/**
+ * Memory-mapped open-addressing hash from sale ID to its row in the ledger.
+ *
+ * Each slot holds a 64-bit hash of the ID, the segment day and the row's byte
+ * offset in that segment. Lookups hash once, probe linearly and let the caller
+ * read the row to confirm the ID, so a hit costs one probe and one read.
+ */
+public class SaleIdIndex implements Closeable {
+    private static final int MAGIC = 0x53494458; // "SIDX"
+    private static final int HEADER_SIZE = 16;   // magic, capacity, size
+    private static final int SLOT_SIZE = 24;     // hash, epoch day, (pad), offset
+    private static final int MIN_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 26; // keeps the mapping under 2 GB
+    private static final double MAX_LOAD = 0.7;
+
+    // Reads the row stored at a slot; returns null if it is not the wanted sale
+    public interface RowReader {
+        Sale read(LocalDate day, long offset) throws IOException;
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private long size;
+    // A ReentrantLock rather than synchronized: find() reads ledger rows while holding it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SaleIdIndex(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+            open(file);
+            if (map.getInt(0) == MAGIC && Integer.bitCount(capacity) == 1
+                    && Files.size(file) == HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                return;
+            }
+            close();
+        }
+        create(file, MIN_CAPACITY);
+        open(file);
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String saleId, LocalDate day, long offset) throws IOException {
+        lock.lock();
+        try {
+            if (size + 1 > capacity * MAX_LOAD) {
+                grow();
+            }
+            insert(hash(saleId), (int) day.toEpochDay(), offset);
+            size++;
+            map.putLong(8, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Sale find(String saleId, RowReader reader) throws IOException {
+        lock.lock();
+        try {
+            long h = hash(saleId);
+            int mask = capacity - 1;
+            for (int slot = (int) (h ^ (h >>> 32)) & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+                int pos = HEADER_SIZE + slot * SLOT_SIZE;
+                long stored = map.getLong(pos);
+                if (stored == 0) return null;
+                if (stored == h) {
+                    Sale sale = reader.read(LocalDate.ofEpochDay(map.getInt(pos + 8)), map.getLong(pos + 16));
+                    if (sale != null) return sale;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops every entry so the ledger can re-add them from its segments
+    public void clear() throws IOException {
+        lock.lock();
+        try {
+            close();
+            create(file, MIN_CAPACITY);
+            open(file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (map != null) {
+                map.force();
+                map = null;
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(long h, int epochDay, long offset) {
+        int mask = capacity - 1;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (map.getLong(HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int pos = HEADER_SIZE + slot * SLOT_SIZE;
+        map.putLong(pos, h);
+        map.putInt(pos + 8, epochDay);
+        map.putLong(pos + 16, offset);
+    }
+
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("Sale ID index is full (" + size + " entries)");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        create(tmp, capacity * 2);
+        try (FileChannel newChannel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int newCapacity = capacity * 2;
+            MappedByteBuffer newMap = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+            MappedByteBuffer oldMap = map;
+            int oldCapacity = capacity;
+            map = newMap;
+            capacity = newCapacity;
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int pos = HEADER_SIZE + slot * SLOT_SIZE;
+                long h = oldMap.getLong(pos);
+                if (h != 0) insert(h, oldMap.getInt(pos + 8), oldMap.getLong(pos + 16));
+            }
+            newMap.putLong(8, size);
+            newMap.force();
+        }
+        close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open(file);
+    }
+
+    private static void create(Path target, int capacity) throws IOException {
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            m.putInt(0, MAGIC);
+            m.putInt(4, capacity);
+            m.putLong(8, 0);
+            m.force();
+        }
+    }
+
+    private void open(Path source) throws IOException {
+        channel = FileChannel.open(source, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        capacity = map.getInt(4);
+        size = map.getLong(8);
+    }
+
+    // FNV-1a over the ID's chars with a final mix; 0 marks an empty slot so it is never returned
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
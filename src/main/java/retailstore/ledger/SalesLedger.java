@@ -0,0 +1,865 @@
+package ledger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import model.DailySummary;
+import model.Sale;
+import util.StoreUtils;
+
+/**
+ * Sales ledger split into one segment file per day.
+ *
+ * The newest segment is a plain CSV that checkout appends to; older segments
+ * are gzip-compressed once their day is over. manifest.csv keeps the
+ * per-segment time range and totals, so totals and range queries can skip
+ * segments without opening them. sale-ids.idx maps every sale ID to its
+ * segment and byte offset for direct lookups (see SaleIdIndex).
+ *
+ * Closed days can also be compacted into summaries.csv: per day, counts and amounts by
+ * payment type and customer type. Reports read those instead of inflating the segment;
+ * a sale that reopens a compacted day drops its summary until the next compaction. Compaction
+ * also writes a row index per closed segment (sales-DAY.rows, see DayIndex) that history
+ * queries page through instead of scanning the segment.
+ *
+ * Sales dated before the newest segment's day are rejected rather than filed in another
+ * day's segment. Segments only grow and a new one is only started for a later day, so each
+ * row is in its own day's segment and the ledger is also a log: segments in day order, rows
+ * in file order. A position in it is a row count, which
+ * replication uses to resume (see scanFrom).
+ *
+ * State is guarded by a ReentrantLock rather than synchronized, so file I/O under it does
+ * not pin a virtual thread's carrier. Scans and compaction read segment files outside it.
+ */
+public class SalesLedger implements Closeable {
+    private static final String MANIFEST_FILE = "manifest.csv";
+    private static final String INDEX_FILE = "sale-ids.idx";
+    private static final String SUMMARY_FILE = "summaries.csv";
+    private static final String SUMMARY_HEADER =
+        "day,paymentType,customerType,count,totalAmount,discountAmount,finalAmount";
+    private static final double AMOUNT_TOLERANCE = 0.005;
+    private static final int ROW_READ_BYTES = 4096;
+
+    private final Path dir;
+    private final TreeMap<LocalDate, SegmentInfo> segments = new TreeMap<>();
+    private final TreeMap<LocalDate, DailySummary> summaries = new TreeMap<>();
+    // Closed segments whose row index matches their manifest count
+    private final Set<LocalDate> rowIndexed = new HashSet<>();
+    private SegmentInfo active;
+    private OutputStream activeWriter;
+    private long activeSize;
+    private final SaleIdIndex index;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SalesLedger(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        loadManifest();
+        recoverOpenSegments();
+        loadSummaries();
+        loadRowIndexes();
+        index = new SaleIdIndex(dir.resolve(INDEX_FILE));
+        if (index.size() != getSaleCount()) {
+            rebuildIndex();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return segments.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void append(Sale sale) throws IOException {
+        lock.lock();
+        try {
+            LocalDate day = sale.getTimestamp().toLocalDate();
+            if (!segments.isEmpty() && day.isBefore(segments.lastKey())) {
+                // Filing it in its own, older segment would shift every later log position, and
+                // the active segment would hide it from that day's reads
+                throw new IllegalArgumentException("Sale " + sale.getSaleId() + " is dated " + day
+                    + ", before the ledger's newest day " + segments.lastKey());
+            }
+            if (active == null || day.isAfter(active.getDay())) {
+                roll(day);
+            }
+            byte[] row = (StoreUtils.formatSaleCSV(sale) + "\n").getBytes(StandardCharsets.UTF_8);
+            activeWriter.write(row);
+            activeWriter.flush();
+            index.put(sale.getSaleId(), active.getDay(), activeSize);
+            activeSize += row.length;
+            active.add(sale);
+            if (summaries.remove(active.getDay()) != null) {
+                saveSummaries();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Direct lookup through the ID index: one probe, then one read of the row
+    public Sale findSale(String saleId) throws IOException {
+        lock.lock();
+        try {
+            if (activeWriter != null) activeWriter.flush();
+            return index.find(saleId, (day, offset) -> {
+                SegmentInfo segment = segments.get(day);
+                if (segment == null) return null;
+                Sale sale = StoreUtils.parseSaleCSV(readRowAt(segment, offset));
+                return sale != null && sale.getSaleId().equals(saleId) ? sale : null;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Streams every sale in [from, to) to the action, opening only overlapping segments.
+    // The segment list and row counts are taken under the lock and the files read outside it,
+    // so checkout is never blocked and sales appended meanwhile are not part of the scan.
+    public void scan(LocalDateTime from, LocalDateTime to, Consumer<Sale> action) throws IOException {
+        scanSegments(null, from, to, action);
+    }
+
+    // Every sale after the first position rows of the log, in append order. Like scan, reads
+    // outside the lock and does not see sales appended meanwhile.
+    public void scanFrom(long position, Consumer<Sale> action) throws IOException {
+        List<LocalDate> days = new ArrayList<>();
+        List<Boolean> compressed = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        lock.lock();
+        try {
+            if (activeWriter != null) activeWriter.flush();
+            for (SegmentInfo segment : segments.values()) {
+                days.add(segment.getDay());
+                compressed.add(segment.isCompressed());
+                counts.add(segment.getCount());
+            }
+        } finally {
+            lock.unlock();
+        }
+        long skip = position;
+        for (int i = 0; i < days.size(); i++) {
+            int remaining = counts.get(i);
+            if (skip >= remaining) {
+                skip -= remaining;
+                continue;
+            }
+            try (BufferedReader reader = openMovable(days.get(i), compressed.get(i))) {
+                String line = reader.readLine(); // Skip header
+                while (remaining > 0 && (line = reader.readLine()) != null) {
+                    Sale sale = StoreUtils.parseSaleCSV(line);
+                    if (sale == null) continue;
+                    remaining--;
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        action.accept(sale);
+                    }
+                }
+            }
+        }
+    }
+
+    // Same as scan, limited to the segments of the given days
+    public void scanDays(Collection<LocalDate> days, LocalDateTime from, LocalDateTime to, Consumer<Sale> action) throws IOException {
+        scanSegments(days, from, to, action);
+    }
+
+    // For history queries over older days: visits the row index of every indexed segment
+    // overlapping [from, to) (newest segment and row first if asked) and returns the days of
+    // the overlapping segments without one (not compacted yet, or open), for scanDays.
+    // The visitor sees every row of a segment and must apply the time range itself.
+    public List<LocalDate> visitIndexedRows(LocalDateTime from, LocalDateTime to, boolean newestFirst,
+                                            DayIndex.RowVisitor visitor) throws IOException {
+        List<LocalDate> indexed = new ArrayList<>();
+        List<LocalDate> unindexed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (SegmentInfo segment : segments.values()) {
+                if (!segment.overlaps(from, to)) continue;
+                (rowIndexed.contains(segment.getDay()) ? indexed : unindexed).add(segment.getDay());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (newestFirst) Collections.reverse(indexed);
+        for (LocalDate day : indexed) {
+            try {
+                DayIndex.visit(rowIndexFile(day), day, newestFirst, visitor);
+            } catch (NoSuchFileException e) {
+                unindexed.add(day); // Reopened for a sale meanwhile
+            }
+        }
+        return unindexed;
+    }
+
+    // The sales stored at the given row offsets of a day's segment, in one pass over the file.
+    // Offsets must be ascending; rows that no longer parse are skipped.
+    public List<Sale> readSales(LocalDate day, long[] offsets) throws IOException {
+        boolean compressed;
+        lock.lock();
+        try {
+            SegmentInfo segment = segments.get(day);
+            if (segment == null) return new ArrayList<>();
+            if (activeWriter != null) activeWriter.flush();
+            compressed = segment.isCompressed();
+        } finally {
+            lock.unlock();
+        }
+        List<Sale> sales = new ArrayList<>(offsets.length);
+        try (InputStream in = openMovableStream(day, compressed)) {
+            long position = 0;
+            for (long offset : offsets) {
+                skipFully(in, offset - position);
+                String row = readRow(in);
+                if (row == null) break;
+                position = offset + row.getBytes(StandardCharsets.UTF_8).length + 1;
+                Sale sale = StoreUtils.parseSaleCSV(row);
+                if (sale != null) sales.add(sale);
+            }
+        }
+        return sales;
+    }
+
+    private void scanSegments(Collection<LocalDate> days, LocalDateTime from, LocalDateTime to,
+                              Consumer<Sale> action) throws IOException {
+        List<SegmentInfo> overlapping = new ArrayList<>();
+        List<Boolean> compressed = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        lock.lock();
+        try {
+            if (activeWriter != null) activeWriter.flush();
+            for (SegmentInfo segment : segments.values()) {
+                if (!segment.overlaps(from, to) || (days != null && !days.contains(segment.getDay()))) continue;
+                overlapping.add(segment);
+                compressed.add(segment.isCompressed());
+                counts.add(segment.getCount());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < overlapping.size(); i++) {
+            int remaining = counts.get(i);
+            try (BufferedReader reader = openMovable(overlapping.get(i).getDay(), compressed.get(i))) {
+                String line = reader.readLine(); // Skip header
+                // Segments only grow, so the first count readable rows are the ones seen under the lock
+                while (remaining > 0 && (line = reader.readLine()) != null) {
+                    Sale sale = StoreUtils.parseSaleCSV(line);
+                    if (sale == null) continue;
+                    remaining--;
+                    if (!sale.getTimestamp().isBefore(from) && sale.getTimestamp().isBefore(to)) {
+                        action.accept(sale);
+                    }
+                }
+            }
+        }
+    }
+
+    // Sales from the last residentDays days (today included)
+    public List<Sale> loadRecent(int residentDays) throws IOException {
+        List<Sale> recent = new ArrayList<>();
+        LocalDateTime from = LocalDate.now().minusDays(residentDays - 1L).atStartOfDay();
+        scan(from, LocalDateTime.MAX, recent::add);
+        return recent;
+    }
+
+    public List<SegmentInfo> getSegments() {
+        lock.lock();
+        try {
+            return new ArrayList<>(segments.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Calendar days in [from, to) that have at least one sale, oldest first
+    public List<LocalDate> getDaysWithSales(LocalDateTime from, LocalDateTime to) {
+        lock.lock();
+        try {
+            TreeSet<LocalDate> days = new TreeSet<>();
+            for (SegmentInfo segment : segments.values()) {
+                if (!segment.overlaps(from, to)) continue;
+                LocalDate first = segment.getMinTimestamp().isBefore(from) ? from.toLocalDate() : segment.getMinTimestamp().toLocalDate();
+                LocalDate last = segment.getMaxTimestamp().toLocalDate();
+                for (LocalDate day = first; !day.isAfter(last) && day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+                    days.add(day);
+                }
+            }
+            return new ArrayList<>(days);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Oldest sale timestamp on disk, or null for an empty ledger
+    public LocalDateTime getEarliestTimestamp() {
+        lock.lock();
+        try {
+            for (SegmentInfo segment : segments.values()) {
+                if (segment.getCount() > 0) return segment.getMinTimestamp();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Newest sale timestamp on disk, or null for an empty ledger
+    public LocalDateTime getLatestTimestamp() {
+        lock.lock();
+        try {
+            LocalDateTime latest = null;
+            for (SegmentInfo segment : segments.values()) {
+                if (segment.getCount() > 0 && (latest == null || segment.getMaxTimestamp().isAfter(latest))) {
+                    latest = segment.getMaxTimestamp();
+                }
+            }
+            return latest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSaleCount() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (SegmentInfo segment : segments.values()) count += segment.getCount();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getTotalFinalAmount() {
+        lock.lock();
+        try {
+            double total = 0;
+            for (SegmentInfo segment : segments.values()) total += segment.getFinalAmount();
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Precomputed totals for a compacted day (a fresh copy), or null if the day has not been compacted
+    public DailySummary getSummary(LocalDate day) {
+        lock.lock();
+        try {
+            DailySummary stored = summaries.get(day);
+            if (stored == null) return null;
+            // Ledgers written before late sales were rejected may hold some of this day's sales in a
+            // later segment; they are not in the summary, so raw rows are needed then
+            LocalDateTime from = day.atStartOfDay();
+            LocalDateTime to = from.plusDays(1);
+            for (SegmentInfo segment : segments.values()) {
+                if (!segment.getDay().equals(day) && segment.overlaps(from, to)) return null;
+            }
+            DailySummary copy = new DailySummary(day);
+            copy.add(stored);
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSummaryCount() {
+        lock.lock();
+        try {
+            return summaries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Compacts every closed (compressed) segment: a summary for a day whose segment holds only
+    // its own sales, and a row index for history queries. Returns how many segments were done.
+    // Segments are read without holding the ledger lock, so checkout is never blocked; a day that
+    // changes while it is being read is left for the next run.
+    public int compactClosedDays() throws IOException {
+        List<SegmentInfo> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            for (SegmentInfo segment : segments.values()) {
+                if (segment.isCompressed() && (needsSummary(segment) || !rowIndexed.contains(segment.getDay()))) {
+                    pending.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        int compacted = 0;
+        boolean summariesAdded = false;
+        for (SegmentInfo segment : pending) {
+            LocalDate day = segment.getDay();
+            String fileName;
+            int count;
+            lock.lock();
+            try {
+                fileName = segment.getFileName();
+                count = segment.getCount();
+                if (!segment.isCompressed()) continue;
+            } finally {
+                lock.unlock();
+            }
+            DailySummary summary = new DailySummary(day);
+            DayIndex.Writer rows = new DayIndex.Writer();
+            Path tmp = dir.resolve(rowIndexFile(day).getFileName() + ".tmp");
+            try {
+                readSegment(fileName, true, summary, rows);
+                rows.writeTo(tmp);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                continue; // Reopened for a sale meanwhile
+            }
+            lock.lock();
+            try {
+                if (!segment.isCompressed() || segment.getCount() != count || segments.get(day) != segment) {
+                    Files.deleteIfExists(tmp);
+                    continue;
+                }
+                if (summary.getSaleCount() != count) {
+                    System.err.println("Warning: " + fileName + " has " + summary.getSaleCount()
+                        + " readable sales but the manifest counts " + count + "; not compacted");
+                    Files.deleteIfExists(tmp);
+                    continue;
+                }
+                Files.move(tmp, rowIndexFile(day), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                rowIndexed.add(day);
+                if (needsSummary(segment)) {
+                    summaries.put(day, summary);
+                    summariesAdded = true;
+                }
+                compacted++;
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (summariesAdded) {
+            lock.lock();
+            try {
+                saveSummaries();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return compacted;
+    }
+
+    // A summary is only kept for a segment that holds nothing but its own day's sales
+    private boolean needsSummary(SegmentInfo segment) {
+        LocalDateTime from = segment.getDay().atStartOfDay();
+        return segment.within(from, from.plusDays(1)) && !summaries.containsKey(segment.getDay());
+    }
+
+    // Re-reads the raw rows of every compacted day and compares them with its summary and its
+    // manifest totals. Returns one line per problem; empty if everything matches.
+    public List<String> checkSummaries() throws IOException {
+        Map<LocalDate, DailySummary> stored;
+        Map<LocalDate, SegmentInfo> days = new TreeMap<>();
+        lock.lock();
+        try {
+            stored = new TreeMap<>(summaries);
+            for (LocalDate day : stored.keySet()) days.put(day, segments.get(day));
+        } finally {
+            lock.unlock();
+        }
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<LocalDate, DailySummary> e : stored.entrySet()) {
+            LocalDate day = e.getKey();
+            SegmentInfo segment = days.get(day);
+            DailySummary summary = e.getValue();
+            if (segment == null) {
+                problems.add(day + ": summary without a segment");
+                continue;
+            }
+            DailySummary raw;
+            try {
+                raw = summarize(day, segment.getFileName(), segment.isCompressed());
+            } catch (IOException ex) {
+                continue; // Reopened for a sale, which also drops the summary
+            }
+            compare(problems, day + " manifest", segment.getCount(), segment.getTotalAmount(),
+                segment.getDiscountAmount(), segment.getFinalAmount(), summary);
+            compare(problems, day + " all", raw.getSaleCount(), raw.getTotalAmount(),
+                raw.getDiscountAmount(), raw.getFinalAmount(), summary);
+            for (Map.Entry<String, Map<String, DailySummary.Breakdown>> payment : raw.getByPaymentAndCustomerType().entrySet()) {
+                for (Map.Entry<String, DailySummary.Breakdown> customer : payment.getValue().entrySet()) {
+                    DailySummary.Breakdown expected = customer.getValue();
+                    DailySummary.Breakdown actual = summary.getByPaymentAndCustomerType()
+                        .getOrDefault(payment.getKey(), Collections.emptyMap()).get(customer.getKey());
+                    String where = day + " " + payment.getKey() + "/" + customer.getKey();
+                    if (actual == null) {
+                        problems.add(where + ": missing from summary");
+                    } else if (actual.getCount() != expected.getCount()
+                            || !close(actual.getTotalAmount(), expected.getTotalAmount())
+                            || !close(actual.getDiscountAmount(), expected.getDiscountAmount())
+                            || !close(actual.getFinalAmount(), expected.getFinalAmount())) {
+                        problems.add(where + ": summary differs from raw rows");
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    // One-off migration of the old single-file data/sales.csv
+    public int importLegacyCSV(Path legacyFile) throws IOException {
+        lock.lock();
+        try {
+            List<Sale> legacy = new ArrayList<>();
+            for (String line : StoreUtils.loadSaleStringsFromCSV(legacyFile.toString())) {
+                Sale sale = StoreUtils.parseSaleCSV(line);
+                if (sale != null) legacy.add(sale);
+            }
+            // The old file kept checkout order, which is not quite time order around midnight
+            legacy.sort(Comparator.comparing(Sale::getTimestamp));
+            for (Sale sale : legacy) append(sale);
+            saveManifest();
+            return legacy.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (activeWriter != null) {
+                activeWriter.close();
+                activeWriter = null;
+            }
+            index.close();
+            saveManifest();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void roll(LocalDate day) throws IOException {
+        if (activeWriter != null) {
+            activeWriter.close();
+            activeWriter = null;
+        }
+        if (active != null) {
+            compress(active);
+        }
+        active = segments.computeIfAbsent(day, SegmentInfo::new);
+        if (active.isCompressed()) {
+            decompress(active);
+        }
+        Path file = dir.resolve(active.getFileName());
+        boolean fresh = !Files.exists(file);
+        activeWriter = new BufferedOutputStream(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (fresh) {
+            activeWriter.write((StoreUtils.SALE_ROW_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            activeWriter.flush();
+        }
+        activeSize = Files.size(file);
+        saveManifest();
+    }
+
+    private void compress(SegmentInfo segment) throws IOException {
+        if (segment.isCompressed()) return;
+        Path plain = dir.resolve(segment.getFileName());
+        Path tmp = dir.resolve(segment.getFileName() + ".gz.tmp");
+        try (InputStream in = Files.newInputStream(plain);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            in.transferTo(out);
+        }
+        segment.setCompressed(true);
+        Files.move(tmp, dir.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        saveManifest();
+        Files.delete(plain);
+    }
+
+    // Only needed when a sale arrives for the newest day after it was closed, e.g. on reopening
+    private void decompress(SegmentInfo segment) throws IOException {
+        Path gz = dir.resolve(segment.getFileName());
+        segment.setCompressed(false);
+        rowIndexed.remove(segment.getDay());
+        Files.deleteIfExists(rowIndexFile(segment.getDay()));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz))) {
+            Files.copy(in, dir.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+        saveManifest();
+        Files.delete(gz);
+    }
+
+    // Reads one row starting at a byte offset of the segment's uncompressed content.
+    // Plain segments take positional reads (one for any usual row, more for a long list of
+    // line items); compressed ones are inflated up to the row.
+    private String readRowAt(SegmentInfo segment, long offset) throws IOException {
+        Path file = dir.resolve(segment.getFileName());
+        if (!segment.isCompressed()) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteArrayOutputStream row = new ByteArrayOutputStream(ROW_READ_BYTES);
+                ByteBuffer buf = ByteBuffer.allocate(ROW_READ_BYTES);
+                long position = offset;
+                int n;
+                while ((n = ch.read(buf, position)) > 0) {
+                    int end = 0;
+                    while (end < n && buf.get(end) != '\n') end++;
+                    row.write(buf.array(), 0, end);
+                    if (end < n) break;
+                    position += n;
+                    buf.clear();
+                }
+                return new String(row.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) return "";
+                remaining -= skipped;
+            }
+            return readRow(in);
+        }
+    }
+
+    private static String readRow(InputStream in) throws IOException {
+        ByteArrayOutputStream row = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') row.write(b);
+        if (b == -1 && row.size() == 0) return null;
+        return new String(row.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Re-adds every row of every segment to a fresh index (missing, stale or corrupt index file)
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        for (SegmentInfo segment : segments.values()) {
+            InputStream raw = Files.newInputStream(dir.resolve(segment.getFileName()));
+            if (segment.isCompressed()) raw = new GZIPInputStream(raw);
+            try (InputStream in = new BufferedInputStream(raw)) {
+                String row = readRow(in); // Skip header
+                long offset = row == null ? 0 : row.getBytes(StandardCharsets.UTF_8).length + 1;
+                while ((row = readRow(in)) != null) {
+                    Sale sale = StoreUtils.parseSaleCSV(row);
+                    if (sale != null) index.put(sale.getSaleId(), segment.getDay(), offset);
+                    offset += row.getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+            }
+        }
+    }
+
+    // A segment can be compressed (or reopened) between taking the list and opening the file;
+    // a file that is already open keeps its content after being replaced
+    private BufferedReader openMovable(LocalDate day, boolean compressed) throws IOException {
+        return new BufferedReader(new InputStreamReader(openMovableStream(day, compressed), StandardCharsets.UTF_8));
+    }
+
+    private InputStream openMovableStream(LocalDate day, boolean compressed) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(dir.resolve(SegmentInfo.fileName(day, compressed)));
+        } catch (NoSuchFileException e) {
+            compressed = !compressed;
+            in = Files.newInputStream(dir.resolve(SegmentInfo.fileName(day, compressed)));
+        }
+        return new BufferedInputStream(compressed ? new GZIPInputStream(in) : in);
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() == -1) return;
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private Path rowIndexFile(LocalDate day) {
+        return dir.resolve("sales-" + day + ".rows");
+    }
+
+    private BufferedReader openReader(SegmentInfo segment) throws IOException {
+        return openReader(segment.getFileName(), segment.isCompressed());
+    }
+
+    private BufferedReader openReader(String fileName, boolean compressed) throws IOException {
+        InputStream in = Files.newInputStream(dir.resolve(fileName));
+        if (compressed) in = new GZIPInputStream(in);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    // Sums one segment file's rows; needs no lock as long as the file is not replaced meanwhile
+    private DailySummary summarize(LocalDate day, String fileName, boolean compressed) throws IOException {
+        DailySummary summary = new DailySummary(day);
+        readSegment(fileName, compressed, summary, null);
+        return summary;
+    }
+
+    // Adds every readable row to the summary and, if given, to the row index with its offset
+    private void readSegment(String fileName, boolean compressed, DailySummary summary, DayIndex.Writer rows) throws IOException {
+        InputStream raw = Files.newInputStream(dir.resolve(fileName));
+        if (compressed) raw = new GZIPInputStream(raw);
+        try (InputStream in = new BufferedInputStream(raw)) {
+            String row = readRow(in); // Skip header
+            long offset = row == null ? 0 : row.getBytes(StandardCharsets.UTF_8).length + 1;
+            while ((row = readRow(in)) != null) {
+                Sale sale = StoreUtils.parseSaleCSV(row);
+                if (sale != null) {
+                    summary.add(sale);
+                    if (rows != null) rows.add(sale, offset);
+                }
+                offset += row.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+    }
+
+    private static void compare(List<String> problems, String where, int count, double total, double discount,
+                                double fin, DailySummary summary) {
+        if (count != summary.getSaleCount() || !close(total, summary.getTotalAmount())
+                || !close(discount, summary.getDiscountAmount()) || !close(fin, summary.getFinalAmount())) {
+            problems.add(String.format(Locale.ROOT, "%s: %d sales, Rs. %.2f final, but summary has %d sales, Rs. %.2f final",
+                where, count, fin, summary.getSaleCount(), summary.getFinalAmount()));
+        }
+    }
+
+    private static boolean close(double a, double b) {
+        return Math.abs(a - b) < AMOUNT_TOLERANCE;
+    }
+
+    // Summaries whose day no longer matches the manifest (a reopened day before a crash) are dropped
+    private void loadSummaries() throws IOException {
+        Path file = dir.resolve(SUMMARY_FILE);
+        if (!Files.exists(file)) return;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] parts = line.split(",", -1);
+            if (parts.length != 7 || line.startsWith("day,")) continue;
+            try {
+                LocalDate day = LocalDate.parse(parts[0]);
+                summaries.computeIfAbsent(day, DailySummary::new).add(parts[1], parts[2], Integer.parseInt(parts[3]),
+                    Double.parseDouble(parts[4]), Double.parseDouble(parts[5]), Double.parseDouble(parts[6]));
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Skipping bad line in " + SUMMARY_FILE + ": " + line);
+            }
+        }
+        boolean dropped = summaries.entrySet().removeIf(e -> {
+            SegmentInfo segment = segments.get(e.getKey());
+            return segment == null || !segment.isCompressed() || segment.getCount() != e.getValue().getSaleCount();
+        });
+        if (dropped) saveSummaries();
+    }
+
+    // Row indexes that no longer match their segment (crash, reopened day) are ignored until rebuilt
+    private void loadRowIndexes() {
+        for (SegmentInfo segment : segments.values()) {
+            if (segment.isCompressed() && DayIndex.count(rowIndexFile(segment.getDay())) == segment.getCount()) {
+                rowIndexed.add(segment.getDay());
+            }
+        }
+    }
+
+    private void saveSummaries() throws IOException {
+        Path tmp = dir.resolve(SUMMARY_FILE + ".tmp");
+        List<String> lines = new ArrayList<>();
+        lines.add(SUMMARY_HEADER);
+        for (DailySummary summary : summaries.values()) {
+            for (Map.Entry<String, Map<String, DailySummary.Breakdown>> payment : summary.getByPaymentAndCustomerType().entrySet()) {
+                for (Map.Entry<String, DailySummary.Breakdown> customer : payment.getValue().entrySet()) {
+                    DailySummary.Breakdown b = customer.getValue();
+                    lines.add(String.format(Locale.ROOT, "%s,%s,%s,%d,%.2f,%.2f,%.2f", summary.getDate(), payment.getKey(),
+                        customer.getKey(), b.getCount(), b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount()));
+                }
+            }
+        }
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(SUMMARY_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadManifest() throws IOException {
+        Path manifest = dir.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifest)) return;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            SegmentInfo info = SegmentInfo.fromManifestLine(line);
+            if (info != null) segments.put(info.getDay(), info);
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        Path tmp = dir.resolve(MANIFEST_FILE + ".tmp");
+        List<String> lines = new ArrayList<>();
+        lines.add(SegmentInfo.MANIFEST_HEADER);
+        for (SegmentInfo segment : segments.values()) lines.add(segment.toManifestLine());
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Plain segment files may be newer than the manifest (appends since the last save or a crash
+    // mid-compression), so their stats are rebuilt from the file; closed days are then compressed.
+    private void recoverOpenSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "sales-*.csv")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(name.substring("sales-".length(), name.length() - ".csv".length()));
+                } catch (DateTimeParseException e) {
+                    // A stray copy such as sales-backup.csv must not keep the ledger, and checkout, from opening
+                    System.err.println("Warning: Ignoring " + file + ": not a ledger segment name");
+                    continue;
+                }
+                SegmentInfo segment = new SegmentInfo(day);
+                segments.put(day, segment);
+                try (BufferedReader reader = openReader(segment)) {
+                    String line = reader.readLine(); // Skip header
+                    while ((line = reader.readLine()) != null) {
+                        Sale sale = StoreUtils.parseSaleCSV(line);
+                        if (sale != null) segment.add(sale);
+                    }
+                }
+            }
+        }
+        LocalDate today = LocalDate.now();
+        for (SegmentInfo segment : new ArrayList<>(segments.values())) {
+            if (!segment.isCompressed() && segment.getDay().isBefore(today)) {
+                compress(segment);
+            }
+        }
+        saveManifest();
+    }
+}
@@ -0,0 +1,99 @@
+package ledger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import model.Sale;
+
+// One manifest entry: where a day's sales live and what they add up to
+public class SegmentInfo {
+    static final String MANIFEST_HEADER =
+        "day,compressed,count,minTimestamp,maxTimestamp,totalAmount,discountAmount,finalAmount";
+
+    private final LocalDate day;
+    private boolean compressed;
+    private int count;
+    private LocalDateTime minTimestamp;
+    private LocalDateTime maxTimestamp;
+    private double totalAmount;
+    private double discountAmount;
+    private double finalAmount;
+
+    public SegmentInfo(LocalDate day) {
+        this.day = day;
+    }
+
+    void add(Sale sale) {
+        LocalDateTime t = sale.getTimestamp();
+        if (minTimestamp == null || t.isBefore(minTimestamp)) minTimestamp = t;
+        if (maxTimestamp == null || t.isAfter(maxTimestamp)) maxTimestamp = t;
+        count++;
+        totalAmount += sale.getTotalAmount();
+        discountAmount += sale.getDiscountAmount();
+        finalAmount += sale.getFinalAmount();
+    }
+
+    void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    // True if any sale in this segment may fall in [from, to)
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        if (count == 0) return false;
+        return !maxTimestamp.isBefore(from) && minTimestamp.isBefore(to);
+    }
+
+    // True if every sale in this segment falls in [from, to)
+    public boolean within(LocalDateTime from, LocalDateTime to) {
+        if (count == 0) return true;
+        return !minTimestamp.isBefore(from) && maxTimestamp.isBefore(to);
+    }
+
+    public String getFileName() {
+        return fileName(day, compressed);
+    }
+
+    static String fileName(LocalDate day, boolean compressed) {
+        return "sales-" + day + (compressed ? ".csv.gz" : ".csv");
+    }
+
+    public LocalDate getDay() { return day; }
+    public boolean isCompressed() { return compressed; }
+    public int getCount() { return count; }
+    public LocalDateTime getMinTimestamp() { return minTimestamp; }
+    public LocalDateTime getMaxTimestamp() { return maxTimestamp; }
+    public double getTotalAmount() { return totalAmount; }
+    public double getDiscountAmount() { return discountAmount; }
+    public double getFinalAmount() { return finalAmount; }
+
+    // Locale.ROOT: a comma decimal separator would add fields and the line would be dropped on reload
+    String toManifestLine() {
+        return String.format(Locale.ROOT, "%s,%b,%d,%s,%s,%.2f,%.2f,%.2f", day, compressed, count,
+            minTimestamp == null ? "" : minTimestamp, maxTimestamp == null ? "" : maxTimestamp,
+            totalAmount, discountAmount, finalAmount);
+    }
+
+    static SegmentInfo fromManifestLine(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length != 8) return null;
+        try {
+            SegmentInfo info = new SegmentInfo(LocalDate.parse(parts[0]));
+            info.compressed = Boolean.parseBoolean(parts[1]);
+            info.count = Integer.parseInt(parts[2]);
+            info.minTimestamp = parts[3].isEmpty() ? null : LocalDateTime.parse(parts[3]);
+            info.maxTimestamp = parts[4].isEmpty() ? null : LocalDateTime.parse(parts[4]);
+            info.totalAmount = Double.parseDouble(parts[5]);
+            info.discountAmount = Double.parseDouble(parts[6]);
+            info.finalAmount = Double.parseDouble(parts[7]);
+            return info;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Segment %s: %d sales, Final: Rs. %.2f%s", day, count, finalAmount,
+            compressed ? " (compressed)" : "");
+    }
+}
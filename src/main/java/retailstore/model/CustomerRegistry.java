@@ -0,0 +1,48 @@
+package model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Customers are immutable, so every sale for the same name and type can share one instance
+// (and one name String) instead of each loaded row carrying its own copy.
+// Weak on both sides: a customer stays interned only while some sale or cart still holds
+// it, so scanning years of history or free-text walk-in names does not grow the heap. The
+// key is the customer's own name String, which the weak value does not keep alive.
+public final class CustomerRegistry {
+    private static final Map<String, WeakReference<Customer>> REGULAR = new WeakHashMap<>();
+    private static final Map<String, WeakReference<Customer>> VIP = new WeakHashMap<>();
+
+    private CustomerRegistry() {
+    }
+
+    // type is "VIP" or anything else for a regular customer
+    public static Customer intern(String name, String type) {
+        boolean vip = "VIP".equals(type);
+        Map<String, WeakReference<Customer>> customers = vip ? VIP : REGULAR;
+        synchronized (customers) {
+            WeakReference<Customer> ref = customers.get(name);
+            Customer customer = ref == null ? null : ref.get();
+            if (customer == null) {
+                customer = vip ? new VIPCustomer(name) : new Customer(name);
+                customers.put(customer.getName(), new WeakReference<>(customer));
+            }
+            return customer;
+        }
+    }
+
+    // Customers still interned; ones no longer referenced may linger until the next GC
+    public static int size() {
+        return liveCount(REGULAR) + liveCount(VIP);
+    }
+
+    private static int liveCount(Map<String, WeakReference<Customer>> customers) {
+        synchronized (customers) {
+            int live = 0;
+            for (WeakReference<Customer> ref : customers.values()) {
+                if (ref.get() != null) live++;
+            }
+            return live;
+        }
+    }
+}
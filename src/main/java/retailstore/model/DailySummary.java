@@ -0,0 +1,97 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Running totals for one business day (Z-report) or a run of days, broken down by payment and customer type
+public class DailySummary {
+    private final LocalDate date;
+    private final LocalDate endDate;
+    private int saleCount;
+    private double totalAmount;
+    private double discountAmount;
+    private double finalAmount;
+    private final Map<String, Breakdown> byPaymentType = new LinkedHashMap<>();
+    private final Map<String, Breakdown> byCustomerType = new LinkedHashMap<>();
+    // Payment type -> customer type; the finest grain, from which the rest can be rebuilt
+    private final Map<String, Map<String, Breakdown>> byPaymentAndCustomerType = new LinkedHashMap<>();
+
+    public DailySummary(LocalDate date) {
+        this(date, date);
+    }
+
+    // Totals for date..endDate, both included
+    public DailySummary(LocalDate date, LocalDate endDate) {
+        this.date = date;
+        this.endDate = endDate;
+    }
+
+    public void add(Sale sale) {
+        add(sale.getPayment().getClass().getSimpleName(), sale.getCustomer().getCustomerType(), 1,
+                sale.getTotalAmount(), sale.getDiscountAmount(), sale.getFinalAmount());
+    }
+
+    // Adds totals that were already summed for one payment type and customer type
+    public void add(String paymentType, String customerType, int count, double total, double discount, double fin) {
+        saleCount += count;
+        totalAmount += total;
+        discountAmount += discount;
+        finalAmount += fin;
+        byPaymentType.computeIfAbsent(paymentType, k -> new Breakdown()).add(count, total, discount, fin);
+        byCustomerType.computeIfAbsent(customerType, k -> new Breakdown()).add(count, total, discount, fin);
+        byPaymentAndCustomerType.computeIfAbsent(paymentType, k -> new LinkedHashMap<>())
+                .computeIfAbsent(customerType, k -> new Breakdown()).add(count, total, discount, fin);
+    }
+
+    // Folds another summary (e.g. one day of a period) into this one
+    public void add(DailySummary other) {
+        for (Map.Entry<String, Map<String, Breakdown>> payment : other.byPaymentAndCustomerType.entrySet()) {
+            for (Map.Entry<String, Breakdown> customer : payment.getValue().entrySet()) {
+                Breakdown b = customer.getValue();
+                add(payment.getKey(), customer.getKey(), b.count, b.totalAmount, b.discountAmount, b.finalAmount);
+            }
+        }
+    }
+
+    public LocalDate getDate() { return date; }
+    public LocalDate getEndDate() { return endDate; }
+    public boolean isPeriod() { return !endDate.equals(date); }
+    public int getSaleCount() { return saleCount; }
+    public double getTotalAmount() { return totalAmount; }
+    public double getDiscountAmount() { return discountAmount; }
+    public double getFinalAmount() { return finalAmount; }
+    public Map<String, Breakdown> getByPaymentType() { return byPaymentType; }
+    public Map<String, Breakdown> getByCustomerType() { return byCustomerType; }
+    public Map<String, Map<String, Breakdown>> getByPaymentAndCustomerType() { return byPaymentAndCustomerType; }
+
+    // "2024-05-01", or "2024-05-01/2024-05-31" for a period (ISO 8601 interval)
+    public String getPeriodLabel() {
+        return isPeriod() ? date + "/" + endDate : date.toString();
+    }
+
+    public static class Breakdown {
+        private int count;
+        private double totalAmount;
+        private double discountAmount;
+        private double finalAmount;
+
+        void add(int count, double total, double discount, double fin) {
+            this.count += count;
+            totalAmount += total;
+            discountAmount += discount;
+            finalAmount += fin;
+        }
+
+        public int getCount() { return count; }
+        public double getTotalAmount() { return totalAmount; }
+        public double getDiscountAmount() { return discountAmount; }
+        public double getFinalAmount() { return finalAmount; }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d sales, Final: Rs. %.2f", isPeriod() ? "Report" : "Z-Report",
+                getPeriodLabel(), saleCount, finalAmount);
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Sale {
@@ -26,9 +27,15 @@ public class Sale {
     // Constructor for loading from CSV with pre-calculated amounts
     public Sale(String saleId, Customer customer, Payment payment,
                 double totalAmount, double discountAmount, double finalAmount, LocalDateTime timestamp) {
+        this(saleId, customer, Collections.emptyList(), payment, totalAmount, discountAmount, finalAmount, timestamp);
+    }
+
+    // Same, with the line items recorded for the sale
+    public Sale(String saleId, Customer customer, List<Product> products, Payment payment,
+                double totalAmount, double discountAmount, double finalAmount, LocalDateTime timestamp) {
         this.saleId = saleId;
         this.customer = customer;
-        this.products = new ArrayList<>(); // Empty for loaded sales
+        this.products = products.isEmpty() ? Collections.emptyList() : new ArrayList<>(products); // Empty list is shared
         this.payment = payment;
         this.totalAmount = totalAmount;
         this.discountAmount = discountAmount;
@@ -2,7 +2,7 @@ package model;
 
 public class User {
     private String username;
-    private String password;
+    private String password; // As stored: a salted hash, or plaintext until CredentialStore migrates it
     private String role; // "Admin" or "Cashier"
 
     public User(String username, String password, String role) {
@@ -15,10 +15,6 @@ public class User {
     public String getPassword() { return password; }
     public String getRole() { return role; }
 
-    public boolean authenticate(String inputPassword) {
-        return this.password.equals(inputPassword);
-    }
-
     public boolean isAdmin() {
         return "Admin".equals(role);
     }
@@ -3,6 +3,12 @@ package payment;
 import model.Payment;
 
 public class CardPayment extends Payment {
+    // Stateless, so every sale shares one instance
+    public static final CardPayment INSTANCE = new CardPayment();
+
+    private CardPayment() {
+    }
+
     @Override
     public void pay(double amount) {
         System.out.println("Paid by Card: Rs. " + amount);
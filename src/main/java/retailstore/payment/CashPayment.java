@@ -3,6 +3,12 @@ package payment;
 import model.Payment;
 
 public class CashPayment extends Payment {
+    // Stateless, so every sale shares one instance
+    public static final CashPayment INSTANCE = new CashPayment();
+
+    private CashPayment() {
+    }
+
     @Override
     public void pay(double amount) {
         System.out.println("Paid in Cash: Rs. " + amount);
@@ -0,0 +1,61 @@
+package replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import model.Product;
+import util.StoreUtils;
+
+// One frame of the replication stream. Payloads reuse the CSV row formats the till already writes.
+class JournalRecord {
+    static final byte SALE = 'S';            // payload: sales ledger row
+    static final byte PRODUCT = 'P';         // payload: name,price,quantity (absolute state)
+    static final byte PRODUCT_REMOVED = 'X'; // payload: name
+    static final byte CATALOG_BEGIN = 'B';   // PRODUCT frames up to CATALOG_END replace the whole catalog
+    static final byte CATALOG_END = 'E';
+    static final byte HEARTBEAT = 'H';
+    // Far above any real row; a larger length means the stream is out of step
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+    final byte type;
+    final long sequence;
+    final long primaryMillis;
+    final String payload;
+
+    JournalRecord(byte type, long sequence, long primaryMillis, String payload) {
+        this.type = type;
+        this.sequence = sequence;
+        this.primaryMillis = primaryMillis;
+        this.payload = payload;
+    }
+
+    static String formatProduct(Product p) {
+        return String.format(Locale.ROOT, "%s,%.2f,%d", StoreUtils.csvField(p.getName()), p.getPrice(), p.getQuantity());
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type);
+        out.writeLong(sequence);
+        out.writeLong(primaryMillis);
+        // Length-prefixed UTF-8 rather than writeUTF, which stops at 64 KB: a sale row with a
+        // large basket of line items can exceed that
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static JournalRecord readFrom(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        long primaryMillis = in.readLong();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Bad replication payload length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new JournalRecord(type, sequence, primaryMillis, new String(bytes, StandardCharsets.UTF_8));
+    }
+}
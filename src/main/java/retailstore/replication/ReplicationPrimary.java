@@ -0,0 +1,254 @@
+package replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.Product;
+import service.ProductService;
+import service.SalesService;
+import util.StoreUtils;
+
+/**
+ * Ships this till's change journal (sales and catalog changes) to warm standbys over TCP.
+ *
+ * Checkout and stock changes only offer a record to each standby's bounded queue; a sender
+ * thread per standby drains the queue in batches and flushes once per batch, so replication
+ * never blocks or slows the till. If a standby falls so far behind that its queue fills, it
+ * is disconnected instead, and catches up from the ledger when it reconnects.
+ *
+ * On connect the standby sends its ledger position: how many sales it holds. It then
+ * receives the whole catalog, every ledger sale past that position in the order they were
+ * recorded, and the live journal. Sales that reach
+ * it both ways are dropped by sale ID. Heartbeats go out when idle so the standby always knows its lag.
+ */
+public class ReplicationPrimary implements Closeable {
+    public static final int DEFAULT_PORT = 8086;
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH = 1024;
+    private static final long HEARTBEAT_MILLIS = 500;
+    private static final long CLOSE_DRAIN_MILLIS = 2000;
+
+    private final ServerSocket serverSocket;
+    private final ProductService productService;
+    private final SalesService salesService;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedStandbys = new AtomicLong();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    public ReplicationPrimary(InetSocketAddress address, ProductService productService, SalesService salesService) throws IOException {
+        this.productService = productService;
+        this.salesService = salesService;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        // Standbys get on-hand stock: units held by open carts here are still in the store
+        productService.addChangeListener((name, current) -> publish(current == null
+                ? JournalRecord.PRODUCT_REMOVED : JournalRecord.PRODUCT,
+                current == null ? name : JournalRecord.formatProduct(new Product(name, current.getPrice(),
+                        current.getQuantity() + productService.getHeldStock(name)))));
+        salesService.addSaleListener(sale -> publish(JournalRecord.SALE, StoreUtils.formatSaleCSV(sale)));
+        this.acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Sequence number of the newest journal record
+    public long getLastSequence() {
+        return sequence.get();
+    }
+
+    public int getStandbyCount() {
+        return sessions.size();
+    }
+
+    // Standbys cut off because their queue overflowed
+    public long getDroppedStandbys() {
+        return droppedStandbys.get();
+    }
+
+    // Stops taking standbys, gives the connected ones a moment to receive what is already
+    // queued for them, then disconnects them
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        long deadline = System.currentTimeMillis() + CLOSE_DRAIN_MILLIS;
+        for (Session session : sessions) {
+            while (!session.isDrained() && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        closed = true;
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    // Never blocks: a standby whose queue is full is disconnected rather than waited for. It must
+    // not be offered anything after the record it missed, or it would apply later records over a
+    // gap that its count-based resume never fills.
+    private void publish(byte type, String payload) {
+        JournalRecord record = new JournalRecord(type, sequence.incrementAndGet(), System.currentTimeMillis(), payload);
+        for (Session session : sessions) {
+            session.offer(record);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                Thread sender = new Thread(session, "replication-send-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.err.println("Warning: Replication accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private class Session implements Runnable {
+        private final Socket socket;
+        private final BlockingQueue<JournalRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean overflowed;
+        private long lastSent;
+        private volatile long offeredThrough; // sequence of the newest record queued
+        private volatile long flushedThrough; // and of the newest one written out
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        // The first failed offer cuts the session off; later records are not queued behind the gap
+        synchronized void offer(JournalRecord record) {
+            if (overflowed) return;
+            if (queue.offer(record)) {
+                offeredThrough = record.sequence;
+            } else {
+                overflowed = true;
+                sessions.remove(this);
+                droppedStandbys.incrementAndGet();
+                System.err.println("Warning: Replication queue full, disconnecting " + socket.getRemoteSocketAddress());
+                close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                long position = in.readLong();
+                // Subscribe before the snapshot, so nothing falls between it and the live journal
+                sessions.add(this);
+                sendCatalog(out);
+                sendSalesFrom(out, position);
+                out.flush();
+                stream(out);
+            } catch (SocketException e) {
+                // Standby went away; it reconnects and catches up on its own
+            } catch (IOException | RuntimeException e) {
+                if (!closed) System.err.println("Warning: Replication to " + socket.getRemoteSocketAddress() + " stopped: " + e.getMessage());
+            } finally {
+                sessions.remove(this);
+                close();
+            }
+        }
+
+        private void stream(DataOutputStream out) throws IOException {
+            List<JournalRecord> batch = new ArrayList<>(MAX_BATCH);
+            while (!closed && !overflowed) {
+                JournalRecord first;
+                try {
+                    first = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (first == null) {
+                    send(out, new JournalRecord(JournalRecord.HEARTBEAT, lastSent, System.currentTimeMillis(), ""));
+                } else {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    // Cut off meanwhile: the standby resumes from the ledger instead
+                    if (overflowed) return;
+                    for (JournalRecord record : batch) send(out, record);
+                }
+                out.flush();
+                if (!batch.isEmpty()) {
+                    flushedThrough = batch.get(batch.size() - 1).sequence;
+                    batch.clear();
+                }
+            }
+        }
+
+        private void sendCatalog(DataOutputStream out) throws IOException {
+            long now = System.currentTimeMillis();
+            long at = sequence.get();
+            send(out, new JournalRecord(JournalRecord.CATALOG_BEGIN, at, now, ""));
+            for (Product product : productService.getOnHandProducts()) {
+                send(out, new JournalRecord(JournalRecord.PRODUCT, at, now, JournalRecord.formatProduct(product)));
+            }
+            send(out, new JournalRecord(JournalRecord.CATALOG_END, at, now, ""));
+        }
+
+        // Streamed straight from the ledger; the scan holds no lock while writing to the socket
+        private void sendSalesFrom(DataOutputStream out, long position) throws IOException {
+            long at = sequence.get();
+            try {
+                salesService.forEachSaleFrom(position, sale -> {
+                    try {
+                        send(out, new JournalRecord(JournalRecord.SALE, at, System.currentTimeMillis(), StoreUtils.formatSaleCSV(sale)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void send(DataOutputStream out, JournalRecord record) throws IOException {
+            record.writeTo(out);
+            if (record.type != JournalRecord.HEARTBEAT && record.sequence > lastSent) lastSent = record.sequence;
+        }
+
+        // Nothing queued is still waiting to be written; a cut-off session has nothing more coming
+        boolean isDrained() {
+            return overflowed || socket.isClosed() || (queue.isEmpty() && flushedThrough >= offeredThrough);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import ledger.SalesLedger;
+import model.Product;
+import model.Sale;
+import service.ProductService;
+import util.CatalogImporter;
+import util.StoreUtils;
+
+/**
+ * Warm standby for a till: follows a ReplicationPrimary and applies its journal to a
+ * data/ directory of its own (data/products.csv and data/ledger), laid out exactly like
+ * the till's. To take over, stop the standby and start the till in the standby's
+ * directory. Reconnects on its own and catches up from where its ledger ends: the ledger
+ * holds the primary's sales in the order they were recorded, so its sale count is the
+ * position to resume from. The catalog is saved only when a record actually changed it.
+ *
+ * Lag is the time since the standby last knew it was in sync: the primary time of the
+ * last record or heartbeat received. Both processes are assumed to share a clock (same
+ * host, or NTP).
+ *
+ * Usage: ReplicationStandby [host] [port] [workDir]
+ * Prints "STATUS seq=... lagMs=... sales=... products=..." once a second.
+ */
+public class ReplicationStandby {
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final long SAVE_MILLIS = 5000;
+
+    private final InetSocketAddress primary;
+    private final Path dataDir;
+    private final ProductService productService = new ProductService();
+    private final SalesLedger ledger;
+    private final ScheduledExecutorService housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "standby-housekeeping");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Socket socket;
+    private volatile boolean stopped;
+    private volatile boolean catalogDirty;
+    private volatile long lastSequence;
+    private volatile long lastPrimaryMillis;
+    private volatile long lastRecordDelayMillis;
+    private volatile long appliedSales;
+    private volatile long duplicateSales;
+    private List<Product> incomingCatalog;
+
+    public ReplicationStandby(InetSocketAddress primary, Path workDir) throws IOException {
+        this.primary = primary;
+        this.dataDir = workDir.resolve("data");
+        Files.createDirectories(dataDir);
+        Path products = dataDir.resolve("products.csv");
+        productService.addProducts(StoreUtils.loadProductsFromCSV(products.toString()));
+        this.ledger = new SalesLedger(dataDir.resolve("ledger"));
+    }
+
+    public long getLastSequence() { return lastSequence; }
+    public long getAppliedSales() { return appliedSales; }
+    public long getDuplicateSales() { return duplicateSales; }
+    public long getLastRecordDelayMillis() { return lastRecordDelayMillis; }
+
+    // How far behind the primary this standby may be; -1 before the first contact
+    public long getLagMillis() {
+        long last = lastPrimaryMillis;
+        return last == 0 ? -1 : Math.max(0, System.currentTimeMillis() - last);
+    }
+
+    public void run() {
+        housekeeping.scheduleAtFixedRate(this::printStatus, 1, 1, TimeUnit.SECONDS);
+        housekeeping.scheduleAtFixedRate(this::saveCatalogIfDirty, SAVE_MILLIS, SAVE_MILLIS, TimeUnit.MILLISECONDS);
+        while (!stopped) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(primary, 5000);
+                s.setTcpNoDelay(true);
+                follow(s);
+            } catch (EOFException e) {
+                if (!stopped) System.err.println("Warning: Primary closed the replication stream, reconnecting");
+            } catch (IOException e) {
+                if (!stopped) System.err.println("Warning: Replication from " + primary + " failed: " + e.getMessage());
+            }
+            if (stopped) break;
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    // Stops following and leaves data/ ready for a till to start on
+    public synchronized void stop() {
+        stopped = true;
+        try {
+            Socket s = socket;
+            if (s != null) s.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        housekeeping.shutdownNow();
+        try {
+            saveCatalog();
+            ledger.close();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not save standby data: " + e.getMessage());
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        out.writeLong(ledger.getSaleCount());
+        out.flush();
+        while (!stopped) {
+            apply(JournalRecord.readFrom(in));
+        }
+    }
+
+    private synchronized void apply(JournalRecord record) throws IOException {
+        if (stopped) return;
+        switch (record.type) {
+            case JournalRecord.SALE:
+                Sale sale = StoreUtils.parseSaleCSV(record.payload);
+                if (sale == null) {
+                    System.err.println("Warning: Bad sale row from primary: " + record.payload);
+                } else if (ledger.findSale(sale.getSaleId()) != null) {
+                    duplicateSales++;
+                } else {
+                    try {
+                        ledger.append(sale);
+                        appliedSales++;
+                    } catch (IllegalArgumentException e) {
+                        // A late row an older primary filed out of day order; this ledger rejects it
+                        System.err.println("Warning: Skipping sale from primary: " + e.getMessage());
+                    }
+                }
+                break;
+            case JournalRecord.PRODUCT:
+                Product product = CatalogImporter.parseProductRow(record.payload);
+                if (product == null) {
+                    System.err.println("Warning: Bad product row from primary: " + record.payload);
+                } else if (incomingCatalog != null) {
+                    incomingCatalog.add(product);
+                } else if (!sameProduct(productService.findProductByName(product.getName()), product)) {
+                    // The primary also ships holds that leave on-hand stock unchanged
+                    productService.addProduct(product);
+                    catalogDirty = true;
+                }
+                break;
+            case JournalRecord.PRODUCT_REMOVED:
+                Product removed = productService.findProductByName(record.payload);
+                if (removed != null) {
+                    productService.removeProduct(removed);
+                    catalogDirty = true;
+                }
+                break;
+            case JournalRecord.CATALOG_BEGIN:
+                incomingCatalog = new ArrayList<>();
+                break;
+            case JournalRecord.CATALOG_END:
+                // Sent on every reconnect; usually nothing changed meanwhile
+                if (!sameCatalog(productService.snapshot().getProducts(), incomingCatalog)) {
+                    productService.replaceAll(incomingCatalog);
+                    catalogDirty = true;
+                }
+                incomingCatalog = null;
+                break;
+            case JournalRecord.HEARTBEAT:
+                break;
+            default:
+                throw new IOException("Unknown replication record type: " + (char) record.type);
+        }
+        if (record.sequence > lastSequence) lastSequence = record.sequence;
+        lastPrimaryMillis = record.primaryMillis;
+        if (record.type != JournalRecord.HEARTBEAT) {
+            lastRecordDelayMillis = Math.max(0, System.currentTimeMillis() - record.primaryMillis);
+        }
+    }
+
+    private static boolean sameProduct(Product a, Product b) {
+        return a != null && b != null && a.getName().equals(b.getName())
+                && a.getPrice() == b.getPrice() && a.getQuantity() == b.getQuantity();
+    }
+
+    private static boolean sameCatalog(List<Product> current, List<Product> incoming) {
+        if (current.size() != incoming.size()) return false;
+        for (int i = 0; i < current.size(); i++) {
+            if (!sameProduct(current.get(i), incoming.get(i))) return false;
+        }
+        return true;
+    }
+
+    private void printStatus() {
+        System.out.println("STATUS seq=" + lastSequence + " lagMs=" + getLagMillis() + " sales=" + appliedSales
+                + " duplicates=" + duplicateSales + " products=" + productService.snapshot().size());
+        System.out.flush();
+    }
+
+    private void saveCatalogIfDirty() {
+        if (!catalogDirty) return;
+        try {
+            saveCatalog();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not save standby catalog: " + e.getMessage());
+        }
+    }
+
+    private synchronized void saveCatalog() throws IOException {
+        catalogDirty = false;
+        StoreUtils.saveProductsToCSV(productService.snapshot().getProducts(), dataDir.resolve("products.csv").toString());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : ReplicationPrimary.DEFAULT_PORT;
+        Path workDir = Paths.get(args.length > 2 ? args[2] : "standby");
+
+        ReplicationStandby standby = new ReplicationStandby(new InetSocketAddress(host, port), workDir);
+        Runtime.getRuntime().addShutdownHook(new Thread(standby::stop));
+        System.out.println("Standby following " + host + ":" + port + " into " + workDir.toAbsolutePath());
+        standby.run();
+    }
+}
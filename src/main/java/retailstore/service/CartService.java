@@ -0,0 +1,156 @@
+package service;
+
+import model.Customer;
+import model.Product;
+import model.Sale;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Open carts for API clients (scanners, kiosks). Adding an item places a timed hold on the stock;
+// a cart left alone past the hold TTL gives its stock back and disappears. Each cart belongs to
+// the session that opened it.
+public class CartService {
+    private final ProductService productService;
+    private final SalesService salesService;
+    private final ReservationManager reservations;
+    private final CustomerService customerService = new CustomerService();
+    private final Map<String, Map<String, Product>> carts = new ConcurrentHashMap<>();
+    private final Map<String, String> owners = new ConcurrentHashMap<>(); // cart ID -> owning session
+    private final AtomicLong nextCartId = new AtomicLong(1);
+
+    public CartService(ProductService productService, SalesService salesService, ReservationManager reservations) {
+        this.productService = productService;
+        this.salesService = salesService;
+        this.reservations = reservations;
+        reservations.addExpiryListener((owner, productName, quantity) -> holdExpired(owner, productName));
+    }
+
+    public String createCart(String owner) {
+        String cartId = "CART" + nextCartId.getAndIncrement();
+        owners.put(cartId, owner);
+        carts.put(cartId, new LinkedHashMap<>());
+        return cartId;
+    }
+
+    // False for an unknown cart too, so callers cannot tell someone else's cart from a missing one
+    public boolean isOwnedBy(String cartId, String owner) {
+        return owner != null && carts.containsKey(cartId) && owner.equals(owners.get(cartId));
+    }
+
+    // Returns null for an unknown cart
+    public List<Product> getCart(String cartId) {
+        Map<String, Product> cart = carts.get(cartId);
+        if (cart == null) return null;
+        synchronized (cart) {
+            return new ArrayList<>(cart.values());
+        }
+    }
+
+    // Returns false when there is not enough stock
+    public boolean addItem(String cartId, String productName, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive");
+        Map<String, Product> cart = requireCart(cartId);
+        Product product = productService.findProductByName(productName);
+        if (product == null) throw new IllegalArgumentException("Unknown product: " + productName);
+        synchronized (cart) {
+            ensureOpen(cartId, cart);
+            if (!reservations.reserve(cartId, productName, quantity)) {
+                return false;
+            }
+            Product existing = cart.get(productName);
+            int newQuantity = existing == null ? quantity : existing.getQuantity() + quantity;
+            cart.put(productName, new Product(productName, product.getPrice(), newQuantity));
+            return true;
+        }
+    }
+
+    // Returns false if the product was not in the cart
+    public boolean removeItem(String cartId, String productName) {
+        Map<String, Product> cart = requireCart(cartId);
+        synchronized (cart) {
+            ensureOpen(cartId, cart);
+            Product removed = cart.remove(productName);
+            if (removed == null) return false;
+            reservations.release(cartId, productName);
+            reservations.touch(cartId);
+            return true;
+        }
+    }
+
+    // Gives every item back to inventory and forgets the cart
+    public void discardCart(String cartId) {
+        Map<String, Product> cart = carts.remove(cartId);
+        if (cart == null) return;
+        owners.remove(cartId);
+        synchronized (cart) {
+            reservations.releaseAll(cartId);
+            cart.clear();
+        }
+    }
+
+    public Sale checkout(String cartId, String customerName, String customerType, String paymentType) throws IOException {
+        Map<String, Product> cart = requireCart(cartId);
+        synchronized (cart) {
+            ensureOpen(cartId, cart);
+            // Refresh first so nothing can expire between reading the holds and committing them
+            reservations.touch(cartId);
+            syncWithHolds(cartId, cart);
+            if (cart.isEmpty()) throw new IllegalStateException("Cart is empty");
+            Customer customer = customerService.createCustomer(customerName, customerType);
+            Sale sale = salesService.createSale(salesService.nextSaleId(), customer,
+                    productService.priceItems(cart.values()), paymentType);
+            salesService.addSale(sale);
+            reservations.commitAll(cartId);
+            carts.remove(cartId);
+            owners.remove(cartId);
+            cart.clear();
+            return sale;
+        }
+    }
+
+    public int getOpenCartCount() {
+        return carts.size();
+    }
+
+    public ReservationManager getReservations() {
+        return reservations;
+    }
+
+    // An abandoned cart whose last hold expired is dropped altogether
+    private void holdExpired(String cartId, String productName) {
+        Map<String, Product> cart = carts.get(cartId);
+        if (cart == null) return;
+        synchronized (cart) {
+            syncWithHolds(cartId, cart);
+            if (cart.isEmpty() && carts.remove(cartId, cart)) owners.remove(cartId);
+        }
+    }
+
+    // Cart quantities follow the holds; an expired hold takes its line out of the cart
+    private void syncWithHolds(String cartId, Map<String, Product> cart) {
+        for (Product item : new ArrayList<>(cart.values())) {
+            int held = reservations.getHeld(cartId, item.getName());
+            if (held == 0) {
+                cart.remove(item.getName());
+            } else if (held != item.getQuantity()) {
+                cart.put(item.getName(), new Product(item.getName(), item.getPrice(), held));
+            }
+        }
+    }
+
+    private Map<String, Product> requireCart(String cartId) {
+        Map<String, Product> cart = carts.get(cartId);
+        if (cart == null) throw new IllegalArgumentException("Unknown cart: " + cartId);
+        return cart;
+    }
+
+    // The cart may have been checked out or discarded while we waited for its lock
+    private void ensureOpen(String cartId, Map<String, Product> cart) {
+        if (carts.get(cartId) != cart) throw new IllegalArgumentException("Unknown cart: " + cartId);
+    }
+}
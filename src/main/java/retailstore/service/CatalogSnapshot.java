@@ -0,0 +1,162 @@
+package service;
+
+import model.Product;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable version of the catalog. Readers hold on to a snapshot for as long as
+ * they need a consistent view; writers never touch it, they publish a new version.
+ *
+ * Products are stored in fixed-size chunks, and a new version copies only the chunk
+ * table and the chunks it changed, so unchanged chunks are shared between versions.
+ *
+ * Each version holds the stock as of its publication, so a snapshot is point-in-time for
+ * prices and stock alike. Stock changes do not publish a version each: ProductService keeps
+ * working stock in its InventoryStore and folds the changed products into the next version.
+ */
+public final class CatalogSnapshot {
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final long version;
+    private final LocalDateTime publishedAt;
+    private final Product[][] chunks;
+    private final int size;
+    private final Map<String, Integer> positions;
+    private final List<Product> view = new AbstractList<Product>() {
+        @Override
+        public Product get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index);
+            return chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    private CatalogSnapshot(long version, Product[][] chunks, int size, Map<String, Integer> positions) {
+        this.version = version;
+        this.publishedAt = LocalDateTime.now();
+        this.chunks = chunks;
+        this.size = size;
+        this.positions = positions;
+    }
+
+    static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, new Product[0][], 0, new HashMap<>());
+    }
+
+    public long getVersion() { return version; }
+    public LocalDateTime getPublishedAt() { return publishedAt; }
+    public int size() { return size; }
+
+    // Read-only, in catalog order
+    public List<Product> getProducts() {
+        return view;
+    }
+
+    public Product find(String name) {
+        Integer position = positions.get(name);
+        return position == null ? null : view.get(position);
+    }
+
+    Editor edit() {
+        return new Editor(this);
+    }
+
+    // Collects changes against a base snapshot; copies chunks and the name index only on first write
+    static final class Editor {
+        private final CatalogSnapshot base;
+        private Product[][] chunks;
+        private final boolean[] copied;
+        private int size;
+        private Map<String, Integer> positions;
+        private boolean positionsCopied;
+        private boolean changed;
+
+        private Editor(CatalogSnapshot base) {
+            this.base = base;
+            this.chunks = base.chunks.clone();
+            this.copied = new boolean[chunks.length];
+            this.size = base.size;
+            this.positions = base.positions;
+        }
+
+        Product get(String name) {
+            Integer position = positions.get(name);
+            return position == null ? null : chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        // Replaces the product with the same name in place, or appends a new one
+        void put(Product product) {
+            Integer position = positions.get(product.getName());
+            if (position == null) {
+                position = size++;
+                mutablePositions().put(product.getName(), position);
+            }
+            set(position, product);
+        }
+
+        void clear() {
+            chunks = new Product[0][];
+            size = 0;
+            positions = new HashMap<>();
+            positionsCopied = true;
+            changed = true;
+        }
+
+        boolean remove(String name) {
+            Integer position = positions.get(name);
+            if (position == null) return false;
+            // Rare (admin removal), so a full rebuild keeps listing order simple
+            Product[] all = new Product[size - 1];
+            for (int i = 0, j = 0; i < size; i++) {
+                if (i != position) all[j++] = at(i);
+            }
+            clear();
+            for (Product product : all) put(product);
+            return true;
+        }
+
+        CatalogSnapshot publish() {
+            if (!changed) return base;
+            return new CatalogSnapshot(base.version + 1, chunks, size, positions);
+        }
+
+        private Product at(int position) {
+            return chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        private void set(int position, Product product) {
+            int chunk = position >>> CHUNK_BITS;
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+            }
+            // Chunks past the base's table, or allocated here, are already private to this editor
+            boolean shared = chunk < copied.length && !copied[chunk];
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Product[CHUNK_SIZE];
+            } else if (shared) {
+                chunks[chunk] = chunks[chunk].clone();
+            }
+            if (chunk < copied.length) copied[chunk] = true;
+            chunks[chunk][position & (CHUNK_SIZE - 1)] = product;
+            changed = true;
+        }
+
+        private Map<String, Integer> mutablePositions() {
+            if (!positionsCopied) {
+                positions = new HashMap<>(positions);
+                positionsCopied = true;
+            }
+            return positions;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import model.User;
+import util.StoreUtils;
+
+/**
+ * Staff credentials shared by the till and the API lanes, indexed by username.
+ *
+ * A first login always runs the salted slow hash. After that, for the session TTL, the
+ * same username and password are checked against a keyed digest held in memory, so a
+ * cashier re-authenticating at a lane costs microseconds instead of a full hash. Session
+ * tokens handed to API lanes expire after the same TTL of inactivity.
+ *
+ * authenticate() and migratePlaintext() can take hundreds of milliseconds per password:
+ * keep them off the FX thread.
+ */
+public class CredentialStore {
+    public static final long DEFAULT_SESSION_TTL_MILLIS = 15 * 60 * 1000;
+    private static final int TOKEN_BYTES = 32;
+    private static final int SESSION_PURGE_THRESHOLD = 1024;
+
+    private static final class Verified {
+        final byte[] digest;
+        final long expiresAt;
+
+        Verified(byte[] digest, long expiresAt) {
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Session {
+        final User user;
+        volatile long expiresAt;
+
+        Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Verified against when the username is unknown, so failures take the same time either way
+    private static final class Decoy {
+        static final String HASH = PasswordHasher.hash("decoy");
+    }
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<String, Verified> recentlyVerified = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long sessionTtlMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec digestKey;
+    private final AtomicLong fullVerifications = new AtomicLong();
+    private final AtomicLong cachedVerifications = new AtomicLong();
+    private volatile int purgeAt = SESSION_PURGE_THRESHOLD;
+
+    public CredentialStore() {
+        this(DEFAULT_SESSION_TTL_MILLIS);
+    }
+
+    public CredentialStore(long sessionTtlMillis) {
+        this.sessionTtlMillis = sessionTtlMillis;
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    // Loads users.csv as it is; plaintext passwords still verify until migratePlaintext runs
+    public void load(String filename) throws IOException {
+        for (User user : StoreUtils.loadUsersFromCSV(filename)) {
+            users.put(user.getUsername(), user);
+        }
+    }
+
+    // Hashes every plaintext password and rewrites the file without them; returns how many
+    // were migrated. Slow (one full hash each), so callers with a UI run it in the background.
+    // A user replaced meanwhile keeps the new entry.
+    public int migratePlaintext(String filename) throws IOException {
+        int migrated = 0;
+        for (User user : getUsers()) {
+            if (PasswordHasher.isHashed(user.getPassword())) continue;
+            User hashed = new User(user.getUsername(), PasswordHasher.hash(user.getPassword()), user.getRole());
+            if (users.replace(user.getUsername(), user, hashed)) migrated++;
+        }
+        if (migrated > 0) {
+            save(filename);
+            System.out.println("Hashed " + migrated + " plaintext password(s) in " + filename);
+        }
+        return migrated;
+    }
+
+    public synchronized void save(String filename) throws IOException {
+        StoreUtils.saveUsersToCSV(getUsers(), filename);
+    }
+
+    // Adds or replaces a user; the old password's cached verification and sessions stop working
+    public void addUser(User user) {
+        users.put(user.getUsername(), user);
+        recentlyVerified.remove(user.getUsername());
+        sessions.values().removeIf(s -> s.user.getUsername().equals(user.getUsername()));
+    }
+
+    public User getUser(String username) {
+        return users.get(username);
+    }
+
+    // Sorted by username
+    public List<User> getUsers() {
+        List<User> list = new ArrayList<>(users.values());
+        list.sort(Comparator.comparing(User::getUsername));
+        return list;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public long getFullVerifications() { return fullVerifications.get(); }
+    public long getCachedVerifications() { return cachedVerifications.get(); }
+
+    // The user if the password is right, otherwise null
+    public User authenticate(String username, String password) {
+        if (username == null || password == null) return null;
+        User user = users.get(username);
+        if (user == null) {
+            PasswordHasher.verify(password, Decoy.HASH);
+            return null;
+        }
+        byte[] digest = digest(username, password);
+        Verified recent = recentlyVerified.get(username);
+        if (recent != null && recent.expiresAt > System.currentTimeMillis() && MessageDigest.isEqual(recent.digest, digest)) {
+            cachedVerifications.incrementAndGet();
+            return user;
+        }
+        fullVerifications.incrementAndGet();
+        if (!PasswordHasher.verify(password, user.getPassword())) return null;
+        recentlyVerified.put(username, new Verified(digest, System.currentTimeMillis() + sessionTtlMillis));
+        return user;
+    }
+
+    // Opaque bearer token for an authenticated user
+    public String openSession(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(user, System.currentTimeMillis() + sessionTtlMillis));
+        if (sessions.size() >= purgeAt) purgeExpiredSessions();
+        return token;
+    }
+
+    // The session's user, or null if the token is unknown or expired; use extends the session
+    public User getSessionUser(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        long now = System.currentTimeMillis();
+        if (session.expiresAt <= now) {
+            sessions.remove(token);
+            return null;
+        }
+        session.expiresAt = now + sessionTtlMillis;
+        return session.user;
+    }
+
+    public void closeSession(String token) {
+        if (token != null) sessions.remove(token);
+    }
+
+    public int getOpenSessionCount() {
+        return sessions.size();
+    }
+
+    private void purgeExpiredSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(s -> s.expiresAt <= now);
+        recentlyVerified.values().removeIf(v -> v.expiresAt <= now);
+        purgeAt = Math.max(SESSION_PURGE_THRESHOLD, sessions.size() * 2);
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(digestKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
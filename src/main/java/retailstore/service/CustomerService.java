@@ -1,7 +1,7 @@
 package service;
 
 import model.Customer;
-import model.VIPCustomer;
+import model.CustomerRegistry;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -29,11 +29,8 @@ public class CustomerService {
         return null;
     }
 
+    // Shared instance per name and type, see CustomerRegistry
     public Customer createCustomer(String name, String type) {
-        if ("VIP".equals(type)) {
-            return new VIPCustomer(name);
-        } else {
-            return new Customer(name);
-        }
+        return CustomerRegistry.intern(name, type);
     }
 }
@@ -0,0 +1,248 @@
+package service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Working stock levels for the whole catalog, kept off the Java heap so that holds and
+ * checkouts change stock in place without allocating. Catalog versions copy the stock of
+ * the products that changed when they are published; this store is not a heap saving.
+ *
+ * Three direct buffers: fixed-width records (name position, name length, quantity, flags,
+ * units held by open carts), an open-addressing hash index from name to record, and a
+ * pool holding the name chars.
+ * Lookups hash the String and compare chars in place, so nothing is allocated either.
+ *
+ * Writers must be serialized by the caller (ProductService holds its lock). Readers need
+ * no lock: index slots and quantities are published with release/acquire ordering, and
+ * growing the buffers publishes a complete new Table.
+ */
+final class InventoryStore {
+    private static final int RECORD_BYTES = 20;
+    private static final int NAME_START = 0;
+    private static final int NAME_LENGTH = 4;
+    private static final int QUANTITY = 8;
+    private static final int FLAGS = 12;
+    private static final int HELD = 16;
+    private static final int LIVE = 1;
+
+    // Index slots hold record + 1; 0 is empty and TOMBSTONE marks a removed entry
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_NAME_CHARS = 16 * 1024;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final class Table {
+        final ByteBuffer records;
+        final ByteBuffer index;
+        final int indexMask;
+        final ByteBuffer names;
+
+        Table(int recordCapacity, int indexCapacity, int nameCapacity) {
+            this.records = ByteBuffer.allocateDirect(recordCapacity * RECORD_BYTES).order(ByteOrder.nativeOrder());
+            this.index = ByteBuffer.allocateDirect(indexCapacity * 4).order(ByteOrder.nativeOrder());
+            this.indexMask = indexCapacity - 1;
+            this.names = ByteBuffer.allocateDirect(nameCapacity * 2).order(ByteOrder.nativeOrder());
+        }
+
+        int recordCapacity() { return records.capacity() / RECORD_BYTES; }
+        int nameCapacity() { return names.capacity() / 2; }
+    }
+
+    private volatile Table table = new Table(INITIAL_RECORDS, INITIAL_RECORDS * 2, INITIAL_NAME_CHARS);
+    // Writer-only state
+    private int recordCount;
+    private int usedSlots;
+    private int nameEnd;
+    private int liveNameChars;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    // Direct memory held by the store
+    long offHeapBytes() {
+        Table t = table;
+        return (long) t.records.capacity() + t.index.capacity() + t.names.capacity();
+    }
+
+    // Record number for the name, or -1. Only valid until the next put, which may renumber.
+    int find(String name) {
+        return find(table, name);
+    }
+
+    // Current stock, or -1 if the name is not stocked
+    int getQuantity(String name) {
+        Table t = table;
+        int record = find(t, name);
+        return record < 0 ? -1 : (int) INT.getAcquire(t.records, record * RECORD_BYTES + QUANTITY);
+    }
+
+    int getQuantity(int record) {
+        return (int) INT.getAcquire(table.records, record * RECORD_BYTES + QUANTITY);
+    }
+
+    // Overwrites the stock in place
+    void setQuantity(int record, int quantity) {
+        INT.setRelease(table.records, record * RECORD_BYTES + QUANTITY, quantity);
+    }
+
+    // Units held by open carts, or 0 if the name is not stocked
+    int getHeld(String name) {
+        Table t = table;
+        int record = find(t, name);
+        return record < 0 ? 0 : (int) INT.getAcquire(t.records, record * RECORD_BYTES + HELD);
+    }
+
+    int getHeld(int record) {
+        return (int) INT.getAcquire(table.records, record * RECORD_BYTES + HELD);
+    }
+
+    void setHeld(int record, int held) {
+        INT.setRelease(table.records, record * RECORD_BYTES + HELD, held);
+    }
+
+    // Sets the stock for the name, adding a record if needed
+    void put(String name, int quantity) {
+        int record = find(table, name);
+        if (record >= 0) {
+            setQuantity(record, quantity);
+            return;
+        }
+        ensureCapacity(name.length());
+        Table t = table;
+        record = recordCount++;
+        int base = record * RECORD_BYTES;
+        for (int i = 0; i < name.length(); i++) {
+            t.names.putChar((nameEnd + i) * 2, name.charAt(i));
+        }
+        t.records.putInt(base + NAME_START, nameEnd);
+        t.records.putInt(base + NAME_LENGTH, name.length());
+        t.records.putInt(base + FLAGS, LIVE);
+        t.records.putInt(base + HELD, 0);
+        INT.setRelease(t.records, base + QUANTITY, quantity);
+        nameEnd += name.length();
+        liveNameChars += name.length();
+        // The slot is published last, so a reader that finds it sees the whole record
+        int slot = emptySlot(t, name.hashCode());
+        // A reused tombstone was already counted
+        if ((int) INT.getAcquire(t.index, slot * 4) == EMPTY) usedSlots++;
+        INT.setRelease(t.index, slot * 4, record + 1);
+        size++;
+    }
+
+    // The record and its name chars stay dead until clear() or the next rebuild reclaims them
+    boolean remove(String name) {
+        Table t = table;
+        int h = mix(name.hashCode());
+        for (int slot = h & t.indexMask; ; slot = (slot + 1) & t.indexMask) {
+            int entry = (int) INT.getAcquire(t.index, slot * 4);
+            if (entry == EMPTY) return false;
+            if (entry != TOMBSTONE && matches(t, entry - 1, name)) {
+                t.records.putInt((entry - 1) * RECORD_BYTES + FLAGS, 0);
+                INT.setRelease(t.index, slot * 4, TOMBSTONE);
+                liveNameChars -= name.length();
+                size--;
+                return true;
+            }
+        }
+    }
+
+    void clear() {
+        table = new Table(INITIAL_RECORDS, INITIAL_RECORDS * 2, INITIAL_NAME_CHARS);
+        recordCount = 0;
+        usedSlots = 0;
+        nameEnd = 0;
+        liveNameChars = 0;
+        size = 0;
+    }
+
+    private static int find(Table t, String name) {
+        int h = mix(name.hashCode());
+        for (int slot = h & t.indexMask; ; slot = (slot + 1) & t.indexMask) {
+            int entry = (int) INT.getAcquire(t.index, slot * 4);
+            if (entry == EMPTY) return -1;
+            if (entry != TOMBSTONE && matches(t, entry - 1, name)) return entry - 1;
+        }
+    }
+
+    private static boolean matches(Table t, int record, String name) {
+        int base = record * RECORD_BYTES;
+        int length = t.records.getInt(base + NAME_LENGTH);
+        if (length != name.length()) return false;
+        int start = t.records.getInt(base + NAME_START);
+        for (int i = 0; i < length; i++) {
+            if (t.names.getChar((start + i) * 2) != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int emptySlot(Table t, int hash) {
+        int slot = mix(hash) & t.indexMask;
+        while ((int) INT.getAcquire(t.index, slot * 4) > EMPTY) {
+            slot = (slot + 1) & t.indexMask;
+        }
+        return slot;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Rebuilds into a new Table when anything is full. Dead records and their name chars are
+    // dropped and live records renumbered. Records and names are left at most 3/4 used, the
+    // index at most half.
+    private void ensureCapacity(int nameLength) {
+        Table t = table;
+        if (recordCount < t.recordCapacity() && (usedSlots + 1) * 2 <= t.indexMask + 1
+                && nameEnd + nameLength <= t.nameCapacity()) {
+            return;
+        }
+        int recordCapacity = INITIAL_RECORDS;
+        while ((size + 1) * 4 > recordCapacity * 3) recordCapacity *= 2;
+        int nameCapacity = INITIAL_NAME_CHARS;
+        while ((liveNameChars + nameLength) * 4 > nameCapacity * 3) nameCapacity *= 2;
+
+        Table rebuilt = new Table(recordCapacity, recordCapacity * 2, nameCapacity);
+        int next = 0;
+        int end = 0;
+        for (int record = 0; record < recordCount; record++) {
+            int from = record * RECORD_BYTES;
+            if (t.records.getInt(from + FLAGS) != LIVE) continue;
+            int start = t.records.getInt(from + NAME_START);
+            int length = t.records.getInt(from + NAME_LENGTH);
+            for (int i = 0; i < length; i++) {
+                rebuilt.names.putChar((end + i) * 2, t.names.getChar((start + i) * 2));
+            }
+            int to = next * RECORD_BYTES;
+            rebuilt.records.putInt(to + NAME_START, end);
+            rebuilt.records.putInt(to + NAME_LENGTH, length);
+            rebuilt.records.putInt(to + QUANTITY, t.records.getInt(from + QUANTITY));
+            rebuilt.records.putInt(to + FLAGS, LIVE);
+            rebuilt.records.putInt(to + HELD, t.records.getInt(from + HELD));
+            int slot = emptySlot(rebuilt, hashOf(rebuilt.names, end, length));
+            rebuilt.index.putInt(slot * 4, next + 1);
+            end += length;
+            next++;
+        }
+        recordCount = next;
+        usedSlots = next;
+        nameEnd = end;
+        table = rebuilt;
+    }
+
+    // Same value as String.hashCode() for the pooled chars
+    private static int hashOf(ByteBuffer names, int start, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + names.getChar((start + i) * 2);
+        }
+        return h;
+    }
+}
@@ -1,43 +1,286 @@
 package service;
 
 import model.Product;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+// The catalog is a series of immutable versions; writers are serialized and each write (or
+// bulk write) publishes one new version. Stock changes are written in place to an off-heap
+// InventoryStore and publish nothing. Single-product lookups, stock reads and pricing read the
+// current version and the store without locking. Only a whole-catalog snapshot() after stock
+// changes takes the writer lock, to fold the changed products into one new version.
 public class ProductService {
-    private List<Product> products;
+    // Notified after every change; current is null when the product was removed.
+    // May be called on any thread that changes the catalog.
+    public interface ChangeListener {
+        void productChanged(String name, Product current);
+    }
+
+    // Versions that changed a price (or added a product) are kept for price-at-time-of-sale lookups
+    private static final int PRICE_HISTORY_LIMIT = 64;
+
+    private final InventoryStore stock = new InventoryStore();
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>(CatalogSnapshot.empty());
+    // Products whose stock changed since the current version was published; guarded by this
+    private final Set<String> stockChanged = new HashSet<>();
+    private volatile boolean stockPending;
+    private final Deque<CatalogSnapshot> priceHistory = new ArrayDeque<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
 
     public ProductService() {
-        this.products = new ArrayList<>();
     }
 
-    public void addProduct(Product product) {
-        products.add(product);
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // A consistent, immutable view of the whole catalog, stock included. Lock-free unless stock
+    // changed since the last version, in which case one new version is published first.
+    public CatalogSnapshot snapshot() {
+        if (stockPending) {
+            synchronized (this) {
+                if (stockPending) publish(editor -> { }, false);
+            }
+        }
+        return current.get();
+    }
+
+    // The newest kept version published at or before the given time. Its prices are the ones
+    // in force then; stock in it may be stale. Null if the history does not go back that far.
+    public synchronized CatalogSnapshot getSnapshotAt(LocalDateTime time) {
+        for (Iterator<CatalogSnapshot> it = priceHistory.descendingIterator(); it.hasNext(); ) {
+            CatalogSnapshot snapshot = it.next();
+            if (!snapshot.getPublishedAt().isAfter(time)) return snapshot;
+        }
+        return null;
+    }
+
+    // Products in the catalog
+    public int getProductCount() {
+        return stock.size();
+    }
+
+    // Direct memory used for stock
+    public long getInventoryBytes() {
+        return stock.offHeapBytes();
     }
 
-    public void removeProduct(Product product) {
-        products.remove(product);
+    public synchronized void addProduct(Product product) {
+        stock.put(product.getName(), product.getQuantity());
+        publish(editor -> editor.put(product), true);
+        fireChanged(product.getName(), product);
+    }
+
+    // Bulk load in a single version
+    public synchronized void addProducts(Collection<Product> products) {
+        for (Product product : products) stock.put(product.getName(), product.getQuantity());
+        publish(editor -> {
+            for (Product product : products) editor.put(product);
+        }, true);
+        for (Product product : products) {
+            fireChanged(product.getName(), product);
+        }
+    }
+
+    // Makes the catalog exactly these products, in one version (used by a replication standby)
+    public synchronized void replaceAll(Collection<Product> products) {
+        List<Product> removed = new ArrayList<>();
+        Map<String, Product> incoming = new HashMap<>();
+        for (Product product : products) incoming.put(product.getName(), product);
+        for (Product old : snapshot().getProducts()) {
+            if (!incoming.containsKey(old.getName())) removed.add(old);
+        }
+        for (Product product : products) stock.put(product.getName(), product.getQuantity());
+        publish(editor -> {
+            editor.clear();
+            for (Product product : products) editor.put(product);
+        }, true);
+        for (Product old : removed) {
+            stock.remove(old.getName());
+            fireChanged(old.getName(), null);
+        }
+        for (Product product : products) {
+            fireChanged(product.getName(), product);
+        }
+    }
+
+    public synchronized void removeProduct(Product product) {
+        stockChanged.remove(product.getName());
+        boolean[] removed = {false};
+        publish(editor -> removed[0] = editor.remove(product.getName()), false);
+        if (removed[0]) {
+            stock.remove(product.getName());
+            fireChanged(product.getName(), null);
+        }
     }
 
+    // Read-only list from the current snapshot
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products);
+        return snapshot().getProducts();
     }
 
+    // The current listing with live stock, without publishing a version
     public Product findProductByName(String name) {
+        Product listed = current.get().find(name);
+        if (listed == null) return null;
+        int quantity = stock.getQuantity(name);
+        if (quantity < 0) return null; // removed meanwhile
+        return quantity == listed.getQuantity() ? listed : new Product(name, listed.getPrice(), quantity);
+    }
+
+    // Prices a cart from one version, so a concurrent price update applies to all lines or none.
+    // Only prices are needed, so pending stock is not folded in. Lines whose product has left
+    // the catalog keep the price they were added at.
+    public List<Product> priceItems(Collection<Product> items) {
+        CatalogSnapshot catalog = current.get();
+        List<Product> priced = new ArrayList<>(items.size());
+        for (Product item : items) {
+            Product listed = catalog.find(item.getName());
+            double price = listed == null ? item.getPrice() : listed.getPrice();
+            priced.add(new Product(item.getName(), price, item.getQuantity()));
+        }
+        return priced;
+    }
+
+    // Current stock, or -1 for a name not in the catalog
+    public int getStock(String name) {
+        return stock.getQuantity(name);
+    }
+
+    // Stock changes are written in place and publish no new version
+    public synchronized void updateProductStock(String name, int newQuantity) {
+        int record = stock.find(name);
+        if (record >= 0) {
+            stock.setQuantity(record, newQuantity);
+            stockChanged(name);
+            fireCurrent(name);
+        }
+    }
+
+    // Atomically adds delta to the stock; fails without changing anything if stock would go negative
+    public synchronized boolean adjustStock(String name, int delta) {
+        int record = stock.find(name);
+        if (record < 0) return false;
+        int newQuantity = stock.getQuantity(record) + delta;
+        if (newQuantity < 0) return false;
+        stock.setQuantity(record, newQuantity);
+        stockChanged(name);
+        fireCurrent(name);
+        return true;
+    }
+
+    // Moves delta units from available stock into stock held by a cart (negative moves them
+    // back). Fails without changing anything if either would go negative.
+    public synchronized boolean holdStock(String name, int delta) {
+        int record = stock.find(name);
+        if (record < 0) return false;
+        int available = stock.getQuantity(record) - delta;
+        int held = stock.getHeld(record) + delta;
+        if (available < 0 || held < 0) return false;
+        stock.setHeld(record, held);
+        stock.setQuantity(record, available);
+        stockChanged(name);
+        fireCurrent(name);
+        return true;
+    }
+
+    // Held units that were checked out: they leave the store instead of going back on sale
+    public synchronized boolean sellHeldStock(String name, int quantity) {
+        int record = stock.find(name);
+        if (record < 0 || stock.getHeld(record) < quantity) return false;
+        stock.setHeld(record, stock.getHeld(record) - quantity);
+        fireCurrent(name);
+        return true;
+    }
+
+    // Units held by open carts, 0 for a name not in the catalog
+    public int getHeldStock(String name) {
+        return stock.getHeld(name);
+    }
+
+    // Products with the stock physically in the store, available plus held by open carts.
+    // This is what gets saved and replicated, so an open cart never loses stock on disk.
+    public synchronized List<Product> getOnHandProducts() {
+        List<Product> products = snapshot().getProducts();
+        List<Product> onHand = new ArrayList<>(products.size());
         for (Product p : products) {
-            if (p.getName().equals(name)) {
-                return p;
+            onHand.add(new Product(p.getName(), p.getPrice(), p.getQuantity() + stock.getHeld(p.getName())));
+        }
+        return onHand;
+    }
+
+    // Applies every price change in one version, so no reader sees half of a price list.
+    // Unknown names are skipped; returns the number of products repriced.
+    public synchronized int updatePrices(Map<String, Double> newPrices) {
+        int[] updated = {0};
+        Product[] changed = new Product[newPrices.size()];
+        publish(editor -> {
+            for (Map.Entry<String, Double> e : newPrices.entrySet()) {
+                Product p = editor.get(e.getKey());
+                if (p == null) continue;
+                Product repriced = new Product(p.getName(), e.getValue(), p.getQuantity());
+                editor.put(repriced);
+                changed[updated[0]++] = repriced;
             }
+        }, true);
+        for (int i = 0; i < updated[0]; i++) {
+            fireCurrent(changed[i].getName());
         }
-        return null;
+        return updated[0];
+    }
+
+    // Every version also takes in the stock changed since the previous one
+    private void publish(Consumer<CatalogSnapshot.Editor> change, boolean pricesChanged) {
+        CatalogSnapshot base = current.get();
+        CatalogSnapshot.Editor editor = base.edit();
+        for (String name : stockChanged) {
+            Product listed = editor.get(name);
+            if (listed != null) editor.put(new Product(name, listed.getPrice(), Math.max(0, stock.getQuantity(name))));
+        }
+        stockChanged.clear();
+        stockPending = false;
+        change.accept(editor);
+        CatalogSnapshot next = editor.publish();
+        if (next == base) return;
+        current.set(next);
+        if (pricesChanged) {
+            priceHistory.addLast(next);
+            if (priceHistory.size() > PRICE_HISTORY_LIMIT) priceHistory.removeFirst();
+        }
+    }
+
+    private void stockChanged(String name) {
+        stockChanged.add(name);
+        stockPending = true;
+    }
+
+    // Sends the product with its current stock; built only when someone listens
+    private void fireCurrent(String name) {
+        if (listeners.isEmpty()) return;
+        Product listed = current.get().find(name);
+        if (listed == null) return;
+        fireChanged(name, new Product(name, listed.getPrice(), Math.max(0, stock.getQuantity(name))));
     }
 
-    public void updateProductStock(String name, int newQuantity) {
-        Product p = findProductByName(name);
-        if (p != null) {
-            // Since Product is immutable, we need to replace it
-            products.remove(p);
-            products.add(new Product(p.getName(), p.getPrice(), newQuantity));
+    private void fireChanged(String name, Product current) {
+        for (ChangeListener listener : listeners) {
+            listener.productChanged(name, current);
         }
     }
 }
@@ -0,0 +1,253 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock held by open carts, released back to inventory when a cart goes quiet.
+ *
+ * Each (cart, product) pair is one hold. Holds sit in a hashed timing wheel keyed by
+ * their deadline tick, so scheduling, refreshing and expiring a hold are O(1) no
+ * matter how many carts are open. Any activity on a cart pushes all its deadlines out.
+ *
+ * Held units stay on hand in ProductService (held, not available), so saving or
+ * replicating the catalog while carts are open never loses them.
+ */
+public class ReservationManager {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(20);
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512; // power of two
+
+    // Called outside the manager lock after a hold has expired and its stock was returned
+    public interface ExpiryListener {
+        void holdExpired(String owner, String productName, int quantity);
+    }
+
+    private static class Hold {
+        final String owner;
+        final String productName;
+        int quantity;
+        long deadlineTick;
+
+        Hold(String owner, String productName) {
+            this.owner = owner;
+            this.productName = productName;
+        }
+    }
+
+    private final ProductService productService;
+    private final long ttlTicks;
+    private final List<Set<Hold>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Map<String, Map<String, Hold>> holdsByOwner = new HashMap<>();
+    private final Map<String, Integer> reservedByProduct = new HashMap<>();
+    private final List<ExpiryListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService ticker;
+    private long currentTick;
+    private int activeHolds;
+    private long reservedUnits;
+    private long expiredHolds;
+    private long expiredUnits;
+
+    public ReservationManager(ProductService productService, long ttlMillis) {
+        this(productService, ttlMillis, true);
+    }
+
+    // Without the ticker the wheel only turns when tick() is called (tests)
+    ReservationManager(ProductService productService, long ttlMillis, boolean autoTick) {
+        this.productService = productService;
+        this.ttlTicks = Math.max(1, (ttlMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new LinkedHashSet<>());
+        }
+        if (autoTick) {
+            this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "reservation-expiry");
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            this.ticker = null;
+        }
+    }
+
+    public void addExpiryListener(ExpiryListener listener) {
+        listeners.add(listener);
+    }
+
+    // Changes the owner's hold on a product by delta units (negative gives stock back).
+    // Returns false, changing nothing, if there is not enough stock or the hold would go negative.
+    public synchronized boolean reserve(String owner, String productName, int delta) {
+        Map<String, Hold> holds = holdsByOwner.computeIfAbsent(owner, k -> new HashMap<>());
+        Hold hold = holds.get(productName);
+        int held = hold == null ? 0 : hold.quantity;
+        if (held + delta < 0 || (delta != 0 && !productService.holdStock(productName, delta))) {
+            if (holds.isEmpty()) holdsByOwner.remove(owner);
+            return false;
+        }
+        if (hold == null) {
+            hold = new Hold(owner, productName);
+            holds.put(productName, hold);
+            activeHolds++;
+        }
+        hold.quantity += delta;
+        reservedUnits += delta;
+        reservedByProduct.merge(productName, delta, Integer::sum);
+        reservedByProduct.remove(productName, 0);
+        if (hold.quantity == 0) {
+            drop(hold);
+        }
+        touch(owner);
+        return true;
+    }
+
+    // Gives the owner's hold on one product back to inventory; returns the units released
+    public synchronized int release(String owner, String productName) {
+        Map<String, Hold> holds = holdsByOwner.get(owner);
+        Hold hold = holds == null ? null : holds.get(productName);
+        if (hold == null) return 0;
+        productService.holdStock(productName, -hold.quantity);
+        unreserve(hold);
+        return hold.quantity;
+    }
+
+    // Cart abandoned or cleared: everything goes back to inventory
+    public synchronized void releaseAll(String owner) {
+        for (Hold hold : holdsOf(owner)) {
+            productService.holdStock(hold.productName, -hold.quantity);
+            unreserve(hold);
+        }
+    }
+
+    // Cart checked out: the held stock is sold, so it leaves inventory
+    public synchronized void commitAll(String owner) {
+        for (Hold hold : holdsOf(owner)) {
+            productService.sellHeldStock(hold.productName, hold.quantity);
+            unreserve(hold);
+        }
+    }
+
+    // Shutdown: every open cart's stock goes back on sale
+    public synchronized void releaseEverything() {
+        for (String owner : new ArrayList<>(holdsByOwner.keySet())) {
+            releaseAll(owner);
+        }
+    }
+
+    // Pushes every deadline of the owner's holds a full TTL out
+    public synchronized void touch(String owner) {
+        Map<String, Hold> holds = holdsByOwner.get(owner);
+        if (holds == null) return;
+        for (Hold hold : holds.values()) {
+            bucket(hold.deadlineTick).remove(hold);
+            schedule(hold);
+        }
+    }
+
+    // Units of a product currently held by the owner (0 once released or expired)
+    public synchronized int getHeld(String owner, String productName) {
+        Map<String, Hold> holds = holdsByOwner.get(owner);
+        Hold hold = holds == null ? null : holds.get(productName);
+        return hold == null ? 0 : hold.quantity;
+    }
+
+    public synchronized int getActiveHolds() { return activeHolds; }
+    public synchronized long getReservedUnits() { return reservedUnits; }
+    public synchronized long getExpiredHolds() { return expiredHolds; }
+    public synchronized long getExpiredUnits() { return expiredUnits; }
+
+    public synchronized int getReservedQuantity(String productName) {
+        return reservedByProduct.getOrDefault(productName, 0);
+    }
+
+    public synchronized Map<String, Integer> getReservedByProduct() {
+        return new HashMap<>(reservedByProduct);
+    }
+
+    public void shutdown() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+
+    // Advances the wheel one tick and expires the holds that are due. Nothing may escape: an
+    // exception would cancel the scheduled ticker and no hold would ever expire again.
+    void tick() {
+        try {
+            expireDue();
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Hold expiry tick failed: " + e);
+        }
+    }
+
+    private void expireDue() {
+        List<Hold> expired = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Set<Hold> bucket = bucket(currentTick);
+            // Holds due in a later revolution share the bucket and are left in place
+            for (Hold hold : new ArrayList<>(bucket)) {
+                if (hold.deadlineTick <= currentTick) {
+                    try {
+                        productService.holdStock(hold.productName, -hold.quantity);
+                    } catch (RuntimeException e) {
+                        // Left in its bucket, so it is retried a revolution later
+                        System.err.println("Warning: Could not release hold on " + hold.productName + ": " + e);
+                        continue;
+                    }
+                    unreserve(hold);
+                    expiredHolds++;
+                    expiredUnits += hold.quantity;
+                    expired.add(hold);
+                }
+            }
+        }
+        for (Hold hold : expired) {
+            for (ExpiryListener listener : listeners) {
+                try {
+                    listener.holdExpired(hold.owner, hold.productName, hold.quantity);
+                } catch (RuntimeException e) {
+                    // A failing listener must not stop the wheel
+                    System.err.println("Warning: Hold expiry listener failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void schedule(Hold hold) {
+        hold.deadlineTick = currentTick + ttlTicks;
+        bucket(hold.deadlineTick).add(hold);
+    }
+
+    private Set<Hold> bucket(long tick) {
+        return wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+    }
+
+    private List<Hold> holdsOf(String owner) {
+        Map<String, Hold> holds = holdsByOwner.get(owner);
+        return holds == null ? new ArrayList<>() : new ArrayList<>(holds.values());
+    }
+
+    // Stock has already been settled by the caller; this only forgets the hold
+    private void unreserve(Hold hold) {
+        reservedUnits -= hold.quantity;
+        reservedByProduct.merge(hold.productName, -hold.quantity, Integer::sum);
+        reservedByProduct.remove(hold.productName, 0);
+        drop(hold);
+    }
+
+    private void drop(Hold hold) {
+        bucket(hold.deadlineTick).remove(hold);
+        Map<String, Hold> holds = holdsByOwner.get(hold.owner);
+        if (holds != null && holds.remove(hold.productName) == hold) {
+            activeHolds--;
+            if (holds.isEmpty()) holdsByOwner.remove(hold.owner);
+        }
+    }
+}
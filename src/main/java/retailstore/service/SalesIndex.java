@@ -0,0 +1,74 @@
+package service;
+
+import model.Sale;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Secondary indexes over the resident sales: a timestamp-sorted list plus hash buckets by
+// customer, customer type and payment type. Queries start from the smallest candidate set.
+class SalesIndex {
+    private final List<Sale> byTime = new ArrayList<>();
+    private final Map<String, List<Sale>> byCustomer = new HashMap<>();
+    private final Map<String, List<Sale>> byCustomerType = new HashMap<>();
+    private final Map<String, List<Sale>> byPaymentType = new HashMap<>();
+
+    void add(Sale sale) {
+        // Sales nearly always arrive in time order, so this is an append
+        int at = byTime.size();
+        while (at > 0 && byTime.get(at - 1).getTimestamp().isAfter(sale.getTimestamp())) at--;
+        byTime.add(at, sale);
+        byCustomer.computeIfAbsent(SalesQuery.customerKey(sale.getCustomer().getName()), k -> new ArrayList<>()).add(sale);
+        byCustomerType.computeIfAbsent(sale.getCustomer().getCustomerType(), k -> new ArrayList<>()).add(sale);
+        byPaymentType.computeIfAbsent(sale.getPayment().getClass().getSimpleName(), k -> new ArrayList<>()).add(sale);
+    }
+
+    // Feeds the collector every indexed sale at or after notBefore that may match; the collector
+    // applies the full filter
+    void query(SalesQuery query, LocalDateTime notBefore, SalesQuery.Collector collector) {
+        LocalDateTime from = query.getFrom().isBefore(notBefore) ? notBefore : query.getFrom();
+        List<Sale> candidates = timeRange(from, query.getTo());
+        candidates = smaller(candidates, byCustomer, query.getCustomerKey());
+        candidates = smaller(candidates, byCustomerType, query.getCustomerType());
+        candidates = smaller(candidates, byPaymentType, query.getPaymentType());
+        // Visit in output order where possible so the collector mostly appends
+        if (query.isNewestFirst()) {
+            for (int i = candidates.size() - 1; i >= 0; i--) acceptFrom(from, candidates.get(i), collector);
+        } else {
+            for (Sale sale : candidates) acceptFrom(from, sale, collector);
+        }
+    }
+
+    // A bucket is not limited to the time range, and the collector only knows the query's own
+    private static void acceptFrom(LocalDateTime from, Sale sale, SalesQuery.Collector collector) {
+        if (!sale.getTimestamp().isBefore(from)) collector.accept(sale);
+    }
+
+    private List<Sale> timeRange(LocalDateTime from, LocalDateTime to) {
+        int start = lowerBound(from);
+        return byTime.subList(start, Math.max(start, lowerBound(to)));
+    }
+
+    // First position whose timestamp is not before t
+    private int lowerBound(LocalDateTime t) {
+        int lo = 0;
+        int hi = byTime.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (byTime.get(mid).getTimestamp().isBefore(t)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static List<Sale> smaller(List<Sale> current, Map<String, List<Sale>> index, String key) {
+        if (key == null) return current;
+        List<Sale> bucket = index.getOrDefault(key, new ArrayList<>());
+        return bucket.size() < current.size() ? bucket : current;
+    }
+}
@@ -0,0 +1,246 @@
+package service;
+
+import ledger.DayIndex;
+import model.Sale;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Filters, sort order and page for SalesService.querySales. Unset filters match everything.
+public class SalesQuery {
+    public enum Sort {
+        NEWEST_FIRST(Comparator.comparing(Sale::getTimestamp).reversed(),
+                Comparator.comparingLong((RowRef r) -> r.time).reversed()),
+        OLDEST_FIRST(Comparator.comparing(Sale::getTimestamp),
+                Comparator.comparingLong((RowRef r) -> r.time)),
+        AMOUNT_HIGH_FIRST(Comparator.comparingDouble(Sale::getFinalAmount).reversed(),
+                Comparator.comparingDouble((RowRef r) -> r.amount).reversed()),
+        AMOUNT_LOW_FIRST(Comparator.comparingDouble(Sale::getFinalAmount),
+                Comparator.comparingDouble((RowRef r) -> r.amount));
+
+        final Comparator<Sale> comparator;
+        // The same order over indexed ledger rows; append order stands in for the sale ID
+        final Comparator<RowRef> rowComparator;
+
+        Sort(Comparator<Sale> comparator, Comparator<RowRef> rowComparator) {
+            // Ties keep time order so pages are stable
+            this.comparator = comparator.thenComparing(Sale::getTimestamp).thenComparing(Sale::getSaleId);
+            this.rowComparator = rowComparator.thenComparingLong((RowRef r) -> r.time)
+                    .thenComparing((RowRef r) -> r.day).thenComparingLong((RowRef r) -> r.offset);
+        }
+    }
+
+    // One page of matches plus the total number of matches, for page counts
+    public static class Result {
+        private final List<Sale> sales;
+        private final int totalMatches;
+
+        Result(List<Sale> sales, int totalMatches) {
+            this.sales = sales;
+            this.totalMatches = totalMatches;
+        }
+
+        public List<Sale> getSales() { return sales; }
+        public int getTotalMatches() { return totalMatches; }
+    }
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String customerName;
+    private String customerType;
+    private String paymentType;
+    private Double minAmount;
+    private Double maxAmount;
+    private Sort sort = Sort.NEWEST_FIRST;
+    private int offset;
+    private int limit = 100;
+
+    // Sales at or after from and strictly before to; either may be null
+    public SalesQuery between(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    public SalesQuery customer(String customerName) {
+        this.customerName = blankToNull(customerName);
+        return this;
+    }
+
+    // "Regular" or "VIP"
+    public SalesQuery customerType(String customerType) {
+        this.customerType = blankToNull(customerType);
+        return this;
+    }
+
+    // "Cash"/"Card" or the payment class name
+    public SalesQuery paymentType(String paymentType) {
+        String type = blankToNull(paymentType);
+        this.paymentType = type == null || type.endsWith("Payment") ? type : type + "Payment";
+        return this;
+    }
+
+    // Bounds on the final amount, inclusive; either may be null
+    public SalesQuery amountBetween(Double minAmount, Double maxAmount) {
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    public SalesQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public SalesQuery page(int pageIndex, int pageSize) {
+        if (pageIndex < 0 || pageSize <= 0) throw new IllegalArgumentException("Invalid page: " + pageIndex + "/" + pageSize);
+        this.offset = pageIndex * pageSize;
+        this.limit = pageSize;
+        return this;
+    }
+
+    LocalDateTime getFrom() { return from == null ? LocalDateTime.MIN : from; }
+    LocalDateTime getTo() { return to == null ? LocalDateTime.MAX : to; }
+    String getCustomerKey() { return customerName == null ? null : customerKey(customerName); }
+    String getCustomerType() { return customerType; }
+    String getPaymentType() { return paymentType; }
+    boolean isNewestFirst() { return sort == Sort.NEWEST_FIRST; }
+
+    static String customerKey(String name) {
+        return DayIndex.customerKey(name);
+    }
+
+    boolean matches(Sale sale) {
+        LocalDateTime t = sale.getTimestamp();
+        if (t.isBefore(getFrom()) || !t.isBefore(getTo())) return false;
+        if (customerName != null && !customerKey(sale.getCustomer().getName()).equals(getCustomerKey())) return false;
+        if (customerType != null && !customerType.equals(sale.getCustomer().getCustomerType())) return false;
+        if (paymentType != null && !paymentType.equals(sale.getPayment().getClass().getSimpleName())) return false;
+        if (minAmount != null && sale.getFinalAmount() < minAmount) return false;
+        return maxAmount == null || sale.getFinalAmount() <= maxAmount;
+    }
+
+    Collector newCollector() {
+        return new Collector();
+    }
+
+    RowCollector newRowCollector(LocalDateTime from, LocalDateTime to) {
+        return new RowCollector(from, to);
+    }
+
+    // A row of an indexed ledger day, ranked before its sale is read
+    static final class RowRef {
+        LocalDate day;
+        long offset;
+        long time;
+        double amount;
+
+        RowRef copy() {
+            RowRef copy = new RowRef();
+            copy.day = day;
+            copy.offset = offset;
+            copy.time = time;
+            copy.amount = amount;
+            return copy;
+        }
+    }
+
+    // Filters indexed ledger rows with the query and keeps the best offset+limit of them, so
+    // only the rows that can reach the page are ever read from disk
+    class RowCollector implements DayIndex.RowVisitor {
+        private final Comparator<RowRef> worstFirst = sort.rowComparator.reversed();
+        private final PriorityQueue<RowRef> best = new PriorityQueue<>(worstFirst);
+        private final RowRef probe = new RowRef();
+        private final int keep = offset + limit;
+        private final long fromKey;
+        private final long toKey;
+        private final long customerHash;
+        private final int customerTypeHash;
+        private final int paymentTypeHash;
+        private int matches;
+
+        RowCollector(LocalDateTime from, LocalDateTime to) {
+            fromKey = from.equals(LocalDateTime.MIN) ? Long.MIN_VALUE : DayIndex.timeKey(from);
+            toKey = to.equals(LocalDateTime.MAX) ? Long.MAX_VALUE : DayIndex.timeKey(to);
+            customerHash = customerName == null ? 0 : DayIndex.customerHash(customerName);
+            customerTypeHash = customerType == null ? 0 : DayIndex.typeHash(customerType);
+            paymentTypeHash = paymentType == null ? 0 : DayIndex.typeHash(paymentType);
+        }
+
+        @Override
+        public void row(LocalDate day, long time, double finalAmount, long customer, int customerTypeCode,
+                        int paymentTypeCode, long rowOffset) {
+            if (time < fromKey || time >= toKey) return;
+            if (customerName != null && customer != customerHash) return;
+            if (customerType != null && customerTypeCode != customerTypeHash) return;
+            if (paymentType != null && paymentTypeCode != paymentTypeHash) return;
+            if (minAmount != null && finalAmount < minAmount) return;
+            if (maxAmount != null && finalAmount > maxAmount) return;
+            matches++;
+            probe.day = day;
+            probe.offset = rowOffset;
+            probe.time = time;
+            probe.amount = finalAmount;
+            if (best.size() < keep) {
+                best.add(probe.copy());
+            } else if (worstFirst.compare(probe, best.peek()) > 0) {
+                best.poll();
+                best.add(probe.copy());
+            }
+        }
+
+        int getMatches() {
+            return matches;
+        }
+
+        // The kept rows, in file order within each day
+        List<RowRef> getRows() {
+            List<RowRef> rows = new ArrayList<>(best);
+            rows.sort(Comparator.comparing((RowRef r) -> r.day).thenComparingLong(r -> r.offset));
+            return rows;
+        }
+    }
+
+    // Counts matches and keeps only the best offset+limit of them, so deep histories
+    // can be paged without holding every match in memory.
+    class Collector {
+        private final int keep = offset + limit;
+        private final List<Sale> kept = new ArrayList<>();
+        private int matches;
+
+        void accept(Sale sale) {
+            if (!matches(sale)) return;
+            matches++;
+            keep(sale);
+        }
+
+        // Adds matches counted elsewhere (a RowCollector), then ranks the sales read for them
+        void addCounted(int count, List<Sale> sales) {
+            matches += count;
+            for (Sale sale : sales) {
+                if (matches(sale)) keep(sale);
+            }
+        }
+
+        private void keep(Sale sale) {
+            int at = Collections.binarySearch(kept, sale, sort.comparator);
+            at = at < 0 ? -at - 1 : at;
+            if (at >= keep) return;
+            kept.add(at, sale);
+            if (kept.size() > keep) kept.remove(kept.size() - 1);
+        }
+
+        Result result() {
+            List<Sale> page = offset >= kept.size() ? new ArrayList<>() : new ArrayList<>(kept.subList(offset, kept.size()));
+            return new Result(page, matches);
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.trim().isEmpty() ? null : s.trim();
+    }
+}
@@ -2,38 +2,358 @@ package service;
 
 import model.Sale;
 import model.Customer;
+import model.DailySummary;
 import model.Product;
 import model.Payment;
 import payment.CashPayment;
 import payment.CardPayment;
+import ledger.SalesLedger;
+import util.SalesExporter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class SalesService {
+    public static final String REFUND_PREFIX = "RFD";
+
     private List<Sale> sales;
+    private Map<String, Sale> salesById = new HashMap<>();
+    private SalesIndex index = new SalesIndex();
+    // Sales before this live only in the ledger; it moves forward as days roll over
+    private LocalDateTime residentFrom = LocalDateTime.MIN;
+    private int residentDays;
+    private SalesLedger ledger;
+    private final AtomicLong lastSaleMillis = new AtomicLong();
+    // Told about every sale once it is persisted, while the service lock is held; must not block
+    private final List<Consumer<Sale>> saleListeners = new CopyOnWriteArrayList<>();
+    // Guards the resident sales and their indexes. A ReentrantLock rather than synchronized, so
+    // ledger I/O under it does not pin a virtual thread's carrier; scans run without it.
+    private final ReentrantLock lock = new ReentrantLock();
 
     public SalesService() {
         this.sales = new ArrayList<>();
     }
 
-    public void addSale(Sale sale) {
-        sales.add(sale);
+    // Ledger-backed: only the last residentDays of sales are kept in memory, the rest stays on disk
+    public SalesService(SalesLedger ledger, int residentDays) throws IOException {
+        this.ledger = ledger;
+        this.residentDays = residentDays;
+        this.residentFrom = LocalDate.now().minusDays(residentDays - 1L).atStartOfDay();
+        this.sales = ledger.loadRecent(residentDays);
+        for (Sale sale : sales) {
+            salesById.put(sale.getSaleId(), sale);
+            index.add(sale);
+        }
+    }
+
+    public void addSale(Sale sale) throws IOException {
+        lock.lock();
+        try {
+            evictClosedDays(LocalDate.now());
+            if (ledger != null) {
+                ledger.append(sale);
+            }
+            sales.add(sale);
+            salesById.put(sale.getSaleId(), sale);
+            index.add(sale);
+            for (Consumer<Sale> listener : saleListeners) {
+                listener.accept(sale);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addSaleListener(Consumer<Sale> listener) {
+        saleListeners.add(listener);
+    }
+
+    // Resident sales first, older ones through the ledger's ID index
+    public Sale findSale(String saleId) throws IOException {
+        Sale sale;
+        lock.lock();
+        try {
+            sale = salesById.get(saleId);
+        } finally {
+            lock.unlock();
+        }
+        if (sale == null && ledger != null) {
+            sale = ledger.findSale(saleId);
+        }
+        return sale;
+    }
+
+    // A recorded refund and the line items that could not be put back into stock
+    public static class Refund {
+        private final Sale sale;
+        private final List<Product> notRestocked;
+
+        Refund(Sale sale, List<Product> notRestocked) {
+            this.sale = sale;
+            this.notRestocked = notRestocked;
+        }
+
+        public Sale getSale() { return sale; }
+        public List<Product> getNotRestocked() { return notRestocked; }
+    }
+
+    // Records a full refund as a negative-amount sale "RFD<saleId>" so revenue and counts
+    // stay correct, then hands each returned item to restock while the service lock is held.
+    // restock returns false for an item it could not take back (say, the product was removed);
+    // those are reported rather than dropped. Line items come from the ledger row; sales
+    // recorded before items were stored have none.
+    public Refund refundSale(String saleId, Predicate<Product> restock) throws IOException {
+        lock.lock();
+        try {
+            if (saleId.startsWith(REFUND_PREFIX)) {
+                throw new IllegalArgumentException("Cannot refund a refund: " + saleId);
+            }
+            Sale original = findSale(saleId);
+            if (original == null) {
+                throw new IllegalArgumentException("Sale not found: " + saleId);
+            }
+            if (findSale(REFUND_PREFIX + saleId) != null) {
+                throw new IllegalStateException("Sale already refunded: " + saleId);
+            }
+            Sale refund = new Sale(REFUND_PREFIX + saleId, original.getCustomer(), original.getPayment(),
+                    -original.getTotalAmount(), -original.getDiscountAmount(), -original.getFinalAmount(),
+                    LocalDateTime.now());
+            addSale(refund);
+            List<Product> notRestocked = new ArrayList<>();
+            for (Product product : original.getProducts()) {
+                if (!restock.test(product)) notRestocked.add(product);
+            }
+            return new Refund(refund, notRestocked);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public List<Sale> getAllSales() {
-        return new ArrayList<>(sales);
+        lock.lock();
+        try {
+            return new ArrayList<>(sales);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // "TXN" + millis as before, bumped past the previous ID so concurrent checkouts never collide
+    public String nextSaleId() {
+        long now = System.currentTimeMillis();
+        return "TXN" + lastSaleMillis.updateAndGet(last -> Math.max(now, last + 1));
     }
 
+    // paymentType is "Cash" or "Card"; anything else is rejected rather than booked as card
     public Sale createSale(String saleId, Customer customer, List<Product> products, String paymentType) {
-        Payment payment = "Cash".equals(paymentType) ? new CashPayment() : new CardPayment();
+        Payment payment;
+        if ("Cash".equals(paymentType)) {
+            payment = CashPayment.INSTANCE;
+        } else if ("Card".equals(paymentType)) {
+            payment = CardPayment.INSTANCE;
+        } else {
+            throw new IllegalArgumentException("Unknown payment type: " + paymentType + " (use Cash or Card)");
+        }
         return new Sale(saleId, customer, products, payment);
     }
 
     public double getTotalRevenue() {
-        return sales.stream().mapToDouble(Sale::getFinalAmount).sum();
+        lock.lock();
+        try {
+            if (ledger != null) return ledger.getTotalFinalAmount();
+            return sales.stream().mapToDouble(Sale::getFinalAmount).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Null when there are no sales at all
+    public LocalDateTime getOldestSaleTimestamp() {
+        lock.lock();
+        try {
+            if (ledger != null) return ledger.getEarliestTimestamp();
+            LocalDateTime oldest = null;
+            for (Sale sale : sales) {
+                if (oldest == null || sale.getTimestamp().isBefore(oldest)) oldest = sale.getTimestamp();
+            }
+            return oldest;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public int getTotalSalesCount() {
-        return sales.size();
+        lock.lock();
+        try {
+            if (ledger != null) return ledger.getSaleCount();
+            return sales.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Visits every sale in [from, to), reading older days from the ledger when there is one
+    // The action runs without the service lock, so a slow consumer never holds up checkout
+    public void forEachSale(LocalDateTime from, LocalDateTime to, Consumer<Sale> action) throws IOException {
+        if (ledger != null) {
+            ledger.scan(from, to, action);
+            return;
+        }
+        List<Sale> inRange = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Sale sale : sales) {
+                if (isInRange(sale, from, to)) {
+                    inRange.add(sale);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        inRange.forEach(action);
+    }
+
+    // Every sale after the first position sales recorded, in the order they were recorded.
+    // Runs without the service lock, like forEachSale.
+    public void forEachSaleFrom(long position, Consumer<Sale> action) throws IOException {
+        if (ledger != null) {
+            ledger.scanFrom(position, action);
+            return;
+        }
+        List<Sale> after;
+        lock.lock();
+        try {
+            after = position >= sales.size() ? new ArrayList<>() : new ArrayList<>(sales.subList((int) position, sales.size()));
+        } finally {
+            lock.unlock();
+        }
+        after.forEach(action);
+    }
+
+    // Filtered, sorted, paged history. Resident days are answered from the in-memory indexes
+    // under the lock. Older days come from the ledger outside it: compacted days through their
+    // row index, reading only the rows that can reach the page, and the rest by a scan.
+    public SalesQuery.Result querySales(SalesQuery query) throws IOException {
+        SalesQuery.Collector collector = query.newCollector();
+        LocalDateTime residentStart;
+        lock.lock();
+        try {
+            evictClosedDays(LocalDate.now());
+            residentStart = residentFrom;
+            index.query(query, residentStart, collector);
+        } finally {
+            lock.unlock();
+        }
+        if (ledger != null && query.getFrom().isBefore(residentStart)) {
+            LocalDateTime to = query.getTo().isBefore(residentStart) ? query.getTo() : residentStart;
+            SalesQuery.RowCollector rows = query.newRowCollector(query.getFrom(), to);
+            List<LocalDate> unindexed = ledger.visitIndexedRows(query.getFrom(), to, query.isNewestFirst(), rows);
+            ledger.scanDays(unindexed, query.getFrom(), to, collector::accept);
+            List<Sale> ranked = new ArrayList<>();
+            List<SalesQuery.RowRef> refs = rows.getRows();
+            for (int i = 0; i < refs.size(); ) {
+                LocalDate day = refs.get(i).day;
+                int end = i;
+                while (end < refs.size() && refs.get(end).day.equals(day)) end++;
+                long[] offsets = new long[end - i];
+                for (int j = i; j < end; j++) offsets[j - i] = refs.get(j).offset;
+                ranked.addAll(ledger.readSales(day, offsets));
+                i = end;
+            }
+            collector.addCounted(rows.getMatches(), ranked);
+        }
+        return collector.result();
+    }
+
+    // Once the day rolls over, sales that left the resident window are dropped from memory and
+    // the indexes rebuilt; they stay on disk. Caller holds the lock.
+    void evictClosedDays(LocalDate today) {
+        if (ledger == null) return;
+        LocalDateTime start = today.minusDays(residentDays - 1L).atStartOfDay();
+        if (!start.isAfter(residentFrom)) return;
+        residentFrom = start;
+        sales.removeIf(sale -> sale.getTimestamp().isBefore(start));
+        salesById.values().removeIf(sale -> sale.getTimestamp().isBefore(start));
+        index = new SalesIndex();
+        for (Sale sale : sales) {
+            index.add(sale);
+        }
+    }
+
+    // Streams every sale in [from, to) to the target file; returns the number of rows written
+    public long exportSales(LocalDateTime from, LocalDateTime to, Path target, SalesExporter.Format format) throws IOException {
+        try (SalesExporter exporter = SalesExporter.openSales(target, format)) {
+            forEachSale(from, to, sale -> {
+                try {
+                    exporter.write(sale);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return exporter.getRowCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Compacted days come from the ledger's precomputed summary; the open day, or a day not
+    // compacted yet, is summed from its raw rows
+    public DailySummary getDailySummary(LocalDate day) throws IOException {
+        if (ledger != null) {
+            DailySummary compacted = ledger.getSummary(day);
+            if (compacted != null) return compacted;
+        }
+        DailySummary summary = new DailySummary(day);
+        forEachSale(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), summary::add);
+        return summary;
+    }
+
+    // Totals for from..to (both included), built day by day as in getDailySummary
+    public DailySummary getPeriodSummary(LocalDate from, LocalDate to) throws IOException {
+        DailySummary period = new DailySummary(from, to);
+        if (ledger == null) {
+            forEachSale(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), period::add);
+            return period;
+        }
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        for (LocalDate day : ledger.getDaysWithSales(from.atStartOfDay(), end)) {
+            period.add(getDailySummary(day));
+        }
+        return period;
+    }
+
+    // Compares every compacted day with its raw rows; one line per problem, empty if all match
+    public List<String> checkSummaries() throws IOException {
+        return ledger == null ? new ArrayList<>() : ledger.checkSummaries();
+    }
+
+    // End-of-day Z-report for a single day
+    public DailySummary exportZReport(LocalDate day, Path target, SalesExporter.Format format) throws IOException {
+        DailySummary summary = getDailySummary(day);
+        SalesExporter.writeZReport(summary, target, format);
+        return summary;
+    }
+
+    // Same layout as a Z-report, over from..to
+    public DailySummary exportPeriodReport(LocalDate from, LocalDate to, Path target, SalesExporter.Format format) throws IOException {
+        DailySummary summary = getPeriodSummary(from, to);
+        SalesExporter.writeZReport(summary, target, format);
+        return summary;
+    }
+
+    private static boolean isInRange(Sale sale, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime t = sale.getTimestamp();
+        return !t.isBefore(from) && t.isBefore(to);
     }
 }
@@ -0,0 +1,50 @@
+package ui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javafx.collections.ModifiableObservableListBase;
+
+// An observable list whose batch() applies any number of changes as one change event, so a
+// TableView relays out once per batch instead of once per row
+public class BatchedObservableList<T> extends ModifiableObservableListBase<T> {
+    private final List<T> items;
+
+    public BatchedObservableList(Collection<? extends T> initial) {
+        this.items = new ArrayList<>(initial);
+    }
+
+    public void batch(Runnable changes) {
+        beginChange();
+        try {
+            changes.run();
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    protected void doAdd(int index, T element) {
+        items.add(index, element);
+    }
+
+    @Override
+    protected T doSet(int index, T element) {
+        return items.set(index, element);
+    }
+
+    @Override
+    protected T doRemove(int index) {
+        return items.remove(index);
+    }
+}
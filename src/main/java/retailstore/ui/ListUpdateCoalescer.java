@@ -0,0 +1,112 @@
+package ui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Batches keyed updates to an ObservableList and applies them on the FX thread once per pulse.
+ *
+ * submit() and remove() may be called from any thread. Updates to the same key between
+ * two pulses collapse into the latest one, and each pulse applies at most
+ * MAX_UPDATES_PER_PULSE keys so a burst of changes cannot stall rendering. A pulse's
+ * changes reach listeners as a single change event, and row positions are rebuilt at
+ * most once per pulse.
+ */
+public class ListUpdateCoalescer<T> {
+    private static final int MAX_UPDATES_PER_PULSE = 2000;
+    private static final Object REMOVED = new Object();
+
+    private final BatchedObservableList<T> target;
+    private final Function<T, String> keyOf;
+    private final Map<String, Object> pending = new ConcurrentHashMap<>();
+    private final Queue<String> order = new ConcurrentLinkedQueue<>();
+    private final Map<String, Integer> positions = new HashMap<>(); // FX thread only
+    private final AnimationTimer timer;
+
+    public ListUpdateCoalescer(BatchedObservableList<T> target, Function<T, String> keyOf) {
+        this.target = target;
+        this.keyOf = keyOf;
+        reindex();
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain();
+            }
+        };
+        timer.start();
+    }
+
+    // Insert or replace the row with the same key
+    public void submit(T item) {
+        enqueue(keyOf.apply(item), item);
+    }
+
+    public void remove(String key) {
+        enqueue(key, REMOVED);
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private void enqueue(String key, Object value) {
+        // Only the first change since the last drain queues the key; later ones just replace the value
+        if (pending.put(key, value) == null) {
+            order.add(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        while (updates.size() < MAX_UPDATES_PER_PULSE) {
+            String key = order.poll();
+            if (key == null) break;
+            Object value = pending.remove(key);
+            if (value != null) updates.put(key, value);
+        }
+        if (updates.isEmpty()) return;
+
+        List<Integer> removals = new ArrayList<>();
+        List<T> additions = new ArrayList<>();
+        target.batch(() -> {
+            // Replacements first, while every position is still valid
+            for (Map.Entry<String, Object> e : updates.entrySet()) {
+                Integer index = positions.get(e.getKey());
+                if (e.getValue() == REMOVED) {
+                    if (index != null) removals.add(index);
+                } else if (index != null) {
+                    target.set(index, (T) e.getValue());
+                } else {
+                    additions.add((T) e.getValue());
+                }
+            }
+            // then removals from the back, so earlier positions do not shift
+            removals.sort(null);
+            for (int i = removals.size() - 1; i >= 0; i--) target.remove((int) removals.get(i));
+            target.addAll(additions);
+        });
+        if (!removals.isEmpty()) {
+            reindex();
+        } else {
+            for (int i = target.size() - additions.size(); i < target.size(); i++) {
+                positions.put(keyOf.apply(target.get(i)), i);
+            }
+        }
+    }
+
+    private void reindex() {
+        positions.clear();
+        for (int i = 0; i < target.size(); i++) {
+            positions.put(keyOf.apply(target.get(i)), i);
+        }
+    }
+}
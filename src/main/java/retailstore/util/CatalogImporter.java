@@ -0,0 +1,380 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.Product;
+
+/**
+ * Bulk catalog import for supplier drops of millions of rows (name,price,quantity).
+ *
+ * The file is memory-mapped and cut into chunks that end on a line break, and the chunks
+ * are parsed in parallel straight from the mapped bytes. Fields may be quoted ("..." with
+ * "" for a quote), so names can contain commas; line breaks inside a field are not
+ * supported, and saveProductsToCSV never writes them. Bad rows are skipped and reported
+ * with their line number. Rows come back in file order.
+ */
+public class CatalogImporter {
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 1L << 30; // a single mapping must stay under 2 GB
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    // Products in file order, plus what was skipped and how fast it went
+    public static class Result {
+        private final List<Product> products;
+        private final long badRows;
+        private final List<String> errors;
+        private final long elapsedNanos;
+
+        Result(List<Product> products, long badRows, List<String> errors, long elapsedNanos) {
+            this.products = products;
+            this.badRows = badRows;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Product> getProducts() { return products; }
+        public long getBadRows() { return badRows; }
+        // The first bad rows, as "line N: reason"
+        public List<String> getErrors() { return errors; }
+        public double getRowsPerSecond() { return products.size() / Math.max(elapsedNanos / 1e9, 1e-9); }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d products, %d bad rows, %.0f rows/s",
+                    products.size(), badRows, getRowsPerSecond());
+        }
+    }
+
+    public static Result parse(Path file) throws IOException {
+        return parse(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static Result parse(Path file, int threads) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = split(channel, size, threads);
+            List<ChunkResult> results = new ArrayList<>(chunks.size());
+            if (chunks.size() == 1) {
+                results.add(new ChunkParser(map(channel, chunks.get(0)), chunks.get(0)[0] == 0).call());
+            } else {
+                ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+                try {
+                    List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+                    for (long[] chunk : chunks) {
+                        futures.add(executor.submit(new ChunkParser(map(channel, chunk), chunk[0] == 0)));
+                    }
+                    for (Future<ChunkResult> future : futures) {
+                        results.add(future.get());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Import interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Import failed: " + e.getCause().getMessage(), e.getCause());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            return merge(results, System.nanoTime() - start);
+        }
+    }
+
+    // One catalog row (same quoting rules as a file); null if the row is bad
+    public static Product parseProductRow(String row) {
+        ChunkResult result = new ChunkParser(ByteBuffer.wrap(row.getBytes(StandardCharsets.UTF_8)), false).call();
+        return result.products.isEmpty() ? null : result.products.get(0);
+    }
+
+    // [start, end) byte ranges, each ending just after a '\n' (or at end of file)
+    private static List<long[]> split(FileChannel channel, long size, int threads) throws IOException {
+        long target = Math.max(MIN_CHUNK_BYTES, size / Math.max(1, threads * 4L));
+        target = Math.min(target, MAX_CHUNK_BYTES);
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + target >= size ? size : nextLineStart(channel, start + target, size);
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        if (chunks.isEmpty()) chunks.add(new long[] {0, 0});
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long[] chunk) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+    }
+
+    private static Result merge(List<ChunkResult> results, long elapsedNanos) {
+        int total = 0;
+        for (ChunkResult r : results) total += r.products.size();
+        List<Product> products = new ArrayList<>(total);
+        List<String> errors = new ArrayList<>();
+        long badRows = 0;
+        long lineOffset = 0;
+        for (ChunkResult r : results) {
+            products.addAll(r.products);
+            badRows += r.badRows;
+            for (int i = 0; i < r.errorLines.size() && errors.size() < MAX_REPORTED_ERRORS; i++) {
+                errors.add("line " + (lineOffset + r.errorLines.get(i) + 1) + ": " + r.errorReasons.get(i));
+            }
+            lineOffset += r.lines;
+        }
+        return new Result(products, badRows, errors, elapsedNanos);
+    }
+
+    private static class ChunkResult {
+        final List<Product> products = new ArrayList<>();
+        final List<Long> errorLines = new ArrayList<>();
+        final List<String> errorReasons = new ArrayList<>();
+        long badRows;
+        long lines;
+    }
+
+    // Parses one chunk straight from the mapped bytes; only the product name becomes a String
+    private static class ChunkParser implements Callable<ChunkResult> {
+        private final ByteBuffer buf;
+        private final boolean firstChunk;
+        private final ChunkResult result = new ChunkResult();
+        private byte[] field = new byte[256];
+        private int fieldLength;
+        private String error;
+
+        ChunkParser(ByteBuffer buf, boolean firstChunk) {
+            this.buf = buf;
+            this.firstChunk = firstChunk;
+        }
+
+        @Override
+        public ChunkResult call() {
+            int pos = 0;
+            int limit = buf.limit();
+            if (firstChunk && limit >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) {
+                pos = 3; // UTF-8 byte order mark
+            }
+            while (pos < limit) {
+                int eol = pos;
+                while (eol < limit && buf.get(eol) != '\n') eol++;
+                int end = eol > pos && buf.get(eol - 1) == '\r' ? eol - 1 : eol;
+                if (end > pos && !(firstChunk && result.lines == 0 && isHeader(pos, end))) {
+                    try {
+                        parseLine(pos, end);
+                    } catch (RuntimeException e) {
+                        // Whatever goes wrong costs this row only, never the whole import
+                        reject("unreadable row (" + e + ")");
+                    }
+                }
+                result.lines++;
+                pos = eol + 1;
+            }
+            return result;
+        }
+
+        private void parseLine(int pos, int end) {
+            error = null;
+            int next = readField(pos, end);
+            String name = next < 0 ? null : new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+            double price = 0;
+            int quantity = 0;
+            if (next >= 0 && name.isEmpty()) error = "empty name";
+            if (error == null) {
+                next = next > end ? -1 : readField(next, end);
+                if (next < 0 && error == null) error = "expected 3 fields";
+                if (error == null) price = parsePrice();
+            }
+            if (error == null) {
+                next = next > end ? -1 : readField(next, end);
+                if (next < 0 && error == null) error = "expected 3 fields";
+                if (error == null) quantity = parseQuantity();
+            }
+            if (error == null && next <= end) error = "expected 3 fields";
+            if (error == null) {
+                result.products.add(new Product(name, price, quantity));
+            } else {
+                reject(error);
+            }
+        }
+
+        private void reject(String reason) {
+            result.badRows++;
+            if (result.errorLines.size() < MAX_REPORTED_ERRORS) {
+                result.errorLines.add(result.lines);
+                result.errorReasons.add(reason);
+            }
+        }
+
+        // Copies one (possibly quoted) field into the scratch array. Returns the position after
+        // its delimiting comma, end + 1 for the last field on the line, or -1 if malformed.
+        private int readField(int pos, int end) {
+            fieldLength = 0;
+            if (pos < end && buf.get(pos) == '"') {
+                pos++;
+                while (true) {
+                    if (pos >= end) {
+                        error = "unterminated quote";
+                        return -1;
+                    }
+                    byte b = buf.get(pos++);
+                    if (b == '"') {
+                        if (pos < end && buf.get(pos) == '"') {
+                            pos++;
+                        } else {
+                            break;
+                        }
+                    }
+                    append(b);
+                }
+                if (pos == end) return end + 1;
+                if (buf.get(pos) != ',') {
+                    error = "text after closing quote";
+                    return -1;
+                }
+                return pos + 1;
+            }
+            while (pos < end) {
+                byte b = buf.get(pos++);
+                if (b == ',') return pos;
+                append(b);
+            }
+            return end + 1;
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                byte[] grown = new byte[field.length * 2];
+                System.arraycopy(field, 0, grown, 0, fieldLength);
+                field = grown;
+            }
+            field[fieldLength++] = b;
+        }
+
+        // Plain decimals are parsed in place; anything else (exponents, ...) goes to Double.parseDouble
+        private double parsePrice() {
+            int i = skipSpaces(0);
+            int end = trimEnd(i);
+            long digits = 0;
+            int scale = 0;
+            boolean dot = false;
+            boolean any = false;
+            for (int j = i; j < end; j++) {
+                byte b = field[j];
+                if (b >= '0' && b <= '9' && digits < 100_000_000_000_000L) {
+                    digits = digits * 10 + (b - '0');
+                    if (dot) scale++;
+                    any = true;
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else {
+                    return parsePriceSlow(i, end);
+                }
+            }
+            if (!any) {
+                error = "bad price";
+                return 0;
+            }
+            if (scale >= POWERS_OF_TEN.length) {
+                return parsePriceSlow(i, end);
+            }
+            // Both operands are exact, so one division rounds the same way Double.parseDouble does
+            return digits / POWERS_OF_TEN[scale];
+        }
+
+        private double parsePriceSlow(int from, int to) {
+            try {
+                double value = Double.parseDouble(new String(field, from, to - from, StandardCharsets.US_ASCII));
+                if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) error = "bad price";
+                return value;
+            } catch (NumberFormatException e) {
+                error = "bad price";
+                return 0;
+            }
+        }
+
+        private int parseQuantity() {
+            int i = skipSpaces(0);
+            int end = trimEnd(i);
+            if (i == end) {
+                error = "bad quantity";
+                return 0;
+            }
+            long value = 0;
+            for (int j = i; j < end; j++) {
+                byte b = field[j];
+                if (b < '0' || b > '9') {
+                    error = "bad quantity";
+                    return 0;
+                }
+                value = value * 10 + (b - '0');
+                if (value > Integer.MAX_VALUE) {
+                    error = "quantity too large";
+                    return 0;
+                }
+            }
+            return (int) value;
+        }
+
+        private int skipSpaces(int i) {
+            while (i < fieldLength && field[i] == ' ') i++;
+            return i;
+        }
+
+        private int trimEnd(int from) {
+            int end = fieldLength;
+            while (end > from && field[end - 1] == ' ') end--;
+            return end;
+        }
+
+        private boolean isHeader(int pos, int end) {
+            byte[] header = "name,".getBytes(StandardCharsets.US_ASCII);
+            if (end - pos < header.length) return false;
+            for (int i = 0; i < header.length; i++) {
+                if (Character.toLowerCase(buf.get(pos + i)) != header[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    // Parses a catalog file and reports speed and bad rows without touching data/.
+    // Usage: CatalogImporter <file> [threads]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CatalogImporter <file> [threads]");
+            return;
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Result result = parse(Paths.get(args[0]), threads);
+        System.out.println(result);
+        for (String error : result.getErrors()) {
+            System.out.println("  " + error);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import model.DailySummary;
+import model.Sale;
+
+/**
+ * Streams sales rows and Z-reports to a file through a FileChannel.
+ * Rows are encoded straight into a reused direct buffer, so an export
+ * allocates nothing per row and its memory use does not grow with the period.
+ */
+public class SalesExporter implements Closeable {
+    public enum Format { CSV, JSON }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SALES_HEADER = StoreUtils.SALES_CSV_HEADER + "\n";
+    private static final String SUMMARY_HEADER =
+            "date,section,key,count,totalAmount,discountAmount,finalAmount\n";
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private final Format format;
+    private final boolean salesMode;
+    private long rowCount;
+
+    private SalesExporter(Path target, Format format, boolean salesMode) throws IOException {
+        this.channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.salesMode = salesMode;
+    }
+
+    // Opens an export for sale rows; call write() per sale and close() when done
+    public static SalesExporter openSales(Path target, Format format) throws IOException {
+        SalesExporter exporter = new SalesExporter(target, format, true);
+        exporter.putAscii(format == Format.CSV ? SALES_HEADER : "[");
+        return exporter;
+    }
+
+    public static void writeZReport(DailySummary summary, Path target, Format format) throws IOException {
+        try (SalesExporter exporter = new SalesExporter(target, format, false)) {
+            exporter.writeSummary(summary);
+        }
+    }
+
+    public void write(Sale sale) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvRow(sale);
+        } else {
+            writeJsonRow(sale);
+        }
+        rowCount++;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void writeCsvRow(Sale s) throws IOException {
+        putCsvText(s.getSaleId());
+        putByte(',');
+        putCsvText(s.getCustomer().getCustomerType());
+        putByte(',');
+        putCsvText(s.getCustomer().getName());
+        putByte(',');
+        putAmount(s.getTotalAmount());
+        putByte(',');
+        putAmount(s.getDiscountAmount());
+        putByte(',');
+        putAmount(s.getFinalAmount());
+        putByte(',');
+        putCsvText(s.getPayment().getClass().getSimpleName());
+        putByte(',');
+        putTimestamp(s.getTimestamp());
+        putByte('\n');
+    }
+
+    private void writeJsonRow(Sale s) throws IOException {
+        putAscii(rowCount == 0 ? "\n{\"saleId\":" : ",\n{\"saleId\":");
+        putJsonText(s.getSaleId());
+        putAscii(",\"customerType\":");
+        putJsonText(s.getCustomer().getCustomerType());
+        putAscii(",\"customerName\":");
+        putJsonText(s.getCustomer().getName());
+        putAscii(",\"totalAmount\":");
+        putAmount(s.getTotalAmount());
+        putAscii(",\"discountAmount\":");
+        putAmount(s.getDiscountAmount());
+        putAscii(",\"finalAmount\":");
+        putAmount(s.getFinalAmount());
+        putAscii(",\"paymentType\":");
+        putJsonText(s.getPayment().getClass().getSimpleName());
+        putAscii(",\"timestamp\":\"");
+        putTimestamp(s.getTimestamp());
+        putAscii("\"}");
+    }
+
+    private void writeSummary(DailySummary summary) throws IOException {
+        if (format == Format.CSV) {
+            putAscii(SUMMARY_HEADER);
+            putCsvSummaryRow(summary, "all", "all", summary.getSaleCount(),
+                    summary.getTotalAmount(), summary.getDiscountAmount(), summary.getFinalAmount());
+            for (Map.Entry<String, DailySummary.Breakdown> e : summary.getByPaymentType().entrySet()) {
+                DailySummary.Breakdown b = e.getValue();
+                putCsvSummaryRow(summary, "payment", e.getKey(), b.getCount(),
+                        b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount());
+            }
+            for (Map.Entry<String, DailySummary.Breakdown> e : summary.getByCustomerType().entrySet()) {
+                DailySummary.Breakdown b = e.getValue();
+                putCsvSummaryRow(summary, "customer", e.getKey(), b.getCount(),
+                        b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount());
+            }
+        } else {
+            putAscii("{\"date\":\"");
+            putAscii(summary.getPeriodLabel());
+            putAscii("\",");
+            putJsonTotals(summary.getSaleCount(), summary.getTotalAmount(),
+                    summary.getDiscountAmount(), summary.getFinalAmount());
+            putAscii(",\"byPaymentType\":");
+            putJsonBreakdowns(summary.getByPaymentType());
+            putAscii(",\"byCustomerType\":");
+            putJsonBreakdowns(summary.getByCustomerType());
+            putAscii("}\n");
+        }
+    }
+
+    private void putCsvSummaryRow(DailySummary summary, String section, String key, int count,
+                                  double total, double discount, double fin) throws IOException {
+        putAscii(summary.getPeriodLabel());
+        putByte(',');
+        putAscii(section);
+        putByte(',');
+        putCsvText(key);
+        putByte(',');
+        putLong(count);
+        putByte(',');
+        putAmount(total);
+        putByte(',');
+        putAmount(discount);
+        putByte(',');
+        putAmount(fin);
+        putByte('\n');
+    }
+
+    private void putJsonBreakdowns(Map<String, DailySummary.Breakdown> breakdowns) throws IOException {
+        putByte('{');
+        boolean first = true;
+        for (Map.Entry<String, DailySummary.Breakdown> e : breakdowns.entrySet()) {
+            if (!first) putByte(',');
+            first = false;
+            DailySummary.Breakdown b = e.getValue();
+            putJsonText(e.getKey());
+            putAscii(":{");
+            putJsonTotals(b.getCount(), b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount());
+            putByte('}');
+        }
+        putByte('}');
+    }
+
+    private void putJsonTotals(int count, double total, double discount, double fin) throws IOException {
+        putAscii("\"count\":");
+        putLong(count);
+        putAscii(",\"totalAmount\":");
+        putAmount(total);
+        putAscii(",\"discountAmount\":");
+        putAmount(discount);
+        putAscii(",\"finalAmount\":");
+        putAmount(fin);
+    }
+
+    // Encoding helpers - each writes straight into the direct buffer
+
+    private void putByte(int b) throws IOException {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put((byte) b);
+    }
+
+    private void putAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            putByte(s.charAt(i));
+        }
+    }
+
+    private void putUtf8(char c, CharSequence s, int i) throws IOException {
+        if (buffer.remaining() < 4) flush();
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            buffer.put((byte) (0xF0 | (cp >> 18)));
+            buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (cp & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            if (!Character.isLowSurrogate(c) || i == 0 || !Character.isHighSurrogate(s.charAt(i - 1))) {
+                buffer.put((byte) '?'); // unpaired surrogate
+            }
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void putCsvText(String s) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quote) putByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') putByte('"');
+            putUtf8(c, s, i);
+        }
+        if (quote) putByte('"');
+    }
+
+    private void putJsonText(String s) throws IOException {
+        putByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                putByte('\\');
+                putByte(c);
+            } else if (c < 0x20) {
+                putAscii("\\u00");
+                putByte(Character.forDigit(c >> 4, 16));
+                putByte(Character.forDigit(c & 0xF, 16));
+            } else {
+                putUtf8(c, s, i);
+            }
+        }
+        putByte('"');
+    }
+
+    private void putLong(long value) throws IOException {
+        if (value < 0) {
+            putByte('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        if (buffer.remaining() < digits.length - pos) flush();
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    // Same output as "%.2f", which rounds the shortest decimal form half up. Scaling by 100
+    // can land just below a half cent (1.005 becomes 100.4999...), so values that close to
+    // one are rounded through BigDecimal instead.
+    private void putAmount(double amount) throws IOException {
+        if (Math.copySign(1.0, amount) < 0) {
+            putByte('-');
+            amount = -amount;
+        }
+        double scaled = amount * 100;
+        long cents = Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6
+                ? BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue()
+                : Math.round(scaled);
+        putLong(cents / 100);
+        putByte('.');
+        int fraction = (int) (cents % 100);
+        putByte('0' + fraction / 10);
+        putByte('0' + fraction % 10);
+    }
+
+    // ISO_LOCAL_DATE_TIME layout, so exported rows load back with LocalDateTime.parse
+    private void putTimestamp(LocalDateTime t) throws IOException {
+        putPadded(t.getYear(), 4);
+        putByte('-');
+        putPadded(t.getMonthValue(), 2);
+        putByte('-');
+        putPadded(t.getDayOfMonth(), 2);
+        putByte('T');
+        putPadded(t.getHour(), 2);
+        putByte(':');
+        putPadded(t.getMinute(), 2);
+        putByte(':');
+        putPadded(t.getSecond(), 2);
+        int nano = t.getNano();
+        if (nano > 0) {
+            putByte('.');
+            int width = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                width--;
+            }
+            putPadded(nano, width);
+        }
+    }
+
+    private void putPadded(int value, int width) throws IOException {
+        if (buffer.remaining() < width) flush();
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        buffer.put(digits, 0, width);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (salesMode && format == Format.JSON) {
+                putAscii(rowCount == 0 ? "]\n" : "\n]\n");
+            }
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,11 +1,22 @@
 package util;
 
 import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import model.*;
+import payment.CardPayment;
+import payment.CashPayment;
 
 public class StoreUtils {
+    public static final String SALES_CSV_HEADER =
+        "saleId,customerType,customerName,totalAmount,discountAmount,finalAmount,paymentType,timestamp";
+    // Rows written by formatSaleCSV also carry the line items, so a refund can restock them
+    public static final String SALE_ROW_HEADER = SALES_CSV_HEADER + ",items";
+
     public static double calculateDiscount(double total, double discountRate) {
         return total * discountRate;
     }
@@ -16,32 +27,34 @@ public class StoreUtils {
 
     // File I/O for Products
     public static void saveProductsToCSV(List<Product> products, String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
             writer.println("name,price,quantity");
             for (Product p : products) {
-                writer.printf("%s,%.2f,%d%n", p.getName(), p.getPrice(), p.getQuantity());
+                writer.printf(Locale.ROOT, "%s,%.2f,%d%n", csvField(p.getName()), p.getPrice(), p.getQuantity());
             }
         }
     }
 
+    // Parsed by CatalogImporter, so quoted names with commas survive; bad rows are reported and skipped
     public static List<Product> loadProductsFromCSV(String filename) throws IOException {
-        List<Product> products = new ArrayList<>();
         File file = new File(filename);
-        if (!file.exists()) return products;
+        if (!file.exists()) return new ArrayList<>();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line = reader.readLine(); // Skip header
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 3) {
-                    String name = parts[0];
-                    double price = Double.parseDouble(parts[1]);
-                    int quantity = Integer.parseInt(parts[2]);
-                    products.add(new Product(name, price, quantity));
-                }
+        CatalogImporter.Result result = CatalogImporter.parse(file.toPath());
+        if (result.getBadRows() > 0) {
+            System.err.println("Warning: Skipped " + result.getBadRows() + " bad rows in " + filename);
+            for (String error : result.getErrors()) {
+                System.err.println("  " + error);
             }
         }
-        return products;
+        return result.getProducts();
+    }
+
+    // Quotes a CSV field when needed; line breaks become spaces so every record stays on one line
+    public static String csvField(String value) {
+        String v = value.replace('\r', ' ').replace('\n', ' ');
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0) return v;
+        return '"' + v.replace("\"", "\"\"") + '"';
     }
 
     // File I/O for Users
@@ -77,18 +90,107 @@ public class StoreUtils {
     // File I/O for Sales
     public static void saveSalesToCSV(List<Sale> sales, String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("saleId,customerType,customerName,totalAmount,discountAmount,finalAmount,paymentType,timestamp");
+            writer.println(SALE_ROW_HEADER);
             for (Sale s : sales) {
-                writer.printf("%s,%s,%s,%.2f,%.2f,%.2f,%s,%s%n",
-                    s.getSaleId(),
-                    s.getCustomer().getCustomerType(),
-                    s.getCustomer().getName(),
-                    s.getTotalAmount(),
-                    s.getDiscountAmount(),
-                    s.getFinalAmount(),
-                    s.getPayment().getClass().getSimpleName(),
-                    s.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                writer.println(formatSaleCSV(s));
+            }
+        }
+    }
+
+    // Locale.ROOT so amounts always use '.' and the row keeps its field count. Text fields are
+    // quoted when needed, since customer names are free text and may contain commas.
+    public static String formatSaleCSV(Sale s) {
+        return String.format(Locale.ROOT, "%s,%s,%s,%.2f,%.2f,%.2f,%s,%s,%s",
+            csvField(s.getSaleId()),
+            csvField(s.getCustomer().getCustomerType()),
+            csvField(s.getCustomer().getName()),
+            s.getTotalAmount(),
+            s.getDiscountAmount(),
+            s.getFinalAmount(),
+            csvField(s.getPayment().getClass().getSimpleName()),
+            s.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+            csvField(formatItems(s.getProducts())));
+    }
+
+    // "name:quantity:price" per line item, joined by ';'. Names are URL-encoded so they
+    // cannot contain a separator; prices keep full precision.
+    static String formatItems(List<Product> items) {
+        StringBuilder field = new StringBuilder();
+        for (Product item : items) {
+            if (field.length() > 0) field.append(';');
+            field.append(URLEncoder.encode(item.getName(), StandardCharsets.UTF_8))
+                .append(':').append(item.getQuantity())
+                .append(':').append(item.getPrice());
+        }
+        return field.toString();
+    }
+
+    static List<Product> parseItems(String field) {
+        if (field.isEmpty()) return Collections.emptyList();
+        List<Product> items = new ArrayList<>();
+        for (String item : field.split(";")) {
+            String[] parts = item.split(":");
+            if (parts.length != 3) throw new IllegalArgumentException("Bad line item: " + item);
+            items.add(new Product(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                Double.parseDouble(parts[2]), Integer.parseInt(parts[1])));
+        }
+        return items;
+    }
+
+    // Rebuilds a Sale from one row written by formatSaleCSV; returns null for malformed rows.
+    // Rows written before line items were recorded have 8 fields and load without items.
+    public static Sale parseSaleCSV(String line) {
+        List<String> parts = splitCSV(line);
+        if (parts == null || parts.size() < 8) return null;
+        try {
+            String saleId = parts.get(0);
+            String customerType = parts.get(1);
+            String customerName = parts.get(2);
+            double totalAmount = Double.parseDouble(parts.get(3));
+            double discountAmount = Double.parseDouble(parts.get(4));
+            double finalAmount = Double.parseDouble(parts.get(5));
+            String paymentType = parts.get(6);
+            LocalDateTime timestamp = LocalDateTime.parse(parts.get(7), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            List<Product> items = parts.size() > 8 ? parseItems(parts.get(8)) : Collections.emptyList();
+
+            Customer customer = CustomerRegistry.intern(customerName, customerType);
+            Payment payment = paymentType.equals("CashPayment") ? CashPayment.INSTANCE : CardPayment.INSTANCE;
+            return new Sale(saleId, customer, items, payment, totalAmount, discountAmount, finalAmount, timestamp);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Splits one record written with csvField, same rules as CatalogImporter: a field may be
+    // quoted, with "" for a quote inside it. Null if a quote is unterminated or followed by text.
+    public static List<String> splitCSV(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int n = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= n) return null;
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < n && line.charAt(i) == '"') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    field.append(c);
+                }
+                if (i < n && line.charAt(i) != ',') return null;
+            } else {
+                while (i < n && line.charAt(i) != ',') field.append(line.charAt(i++));
             }
+            fields.add(field.toString());
+            if (i >= n) return fields;
+            i++; // Skip the comma
         }
     }
 
@@ -0,0 +1,153 @@
+package api;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local load benchmark for PosApiServer, run by hand rather than by the test suite: many
+ * concurrent clients, each on its own connection, looping over product lookups and
+ * open/add/discard cart cycles (no checkouts, so the ledger is not touched and stock ends
+ * where it started). Prints throughput and latency.
+ * Logs in once and shares the session token between clients, as lanes of one till would.
+ *
+ * Usage: ApiLoadBenchmark [baseUrl] [clients] [seconds] [username] [password]
+ */
+public class ApiLoadBenchmark {
+    private static final Pattern NAME = Pattern.compile("\"name\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern CART_ID = Pattern.compile("\"cartId\":\"([^\"]+)\"");
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final List<String> productNames = new ArrayList<>();
+    private String token;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(64); // log2 of microseconds
+
+    private ApiLoadBenchmark(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://127.0.0.1:" + PosApiServer.DEFAULT_PORT;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String username = args.length > 3 ? args[3] : "cashier";
+        String password = args.length > 4 ? args[4] : "cash123";
+
+        // One thread per client: virtual threads on JDK 21+, platform threads otherwise
+        ExecutorService executor = PosApiServer.newVirtualThreadExecutor(Executors::newCachedThreadPool);
+        ApiLoadBenchmark test = new ApiLoadBenchmark(baseUrl);
+        test.logIn(username, password);
+        test.loadProductNames();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int clientNo = i;
+            executor.execute(() -> test.runClient(clientNo, deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long total = test.requests.sum();
+        System.out.printf("clients=%d duration=%.1fs requests=%d errors=%d%n", clients, elapsed, total, test.errors.sum());
+        System.out.printf("throughput=%.0f req/s p50<=%dus p99<=%dus%n",
+                total / elapsed, test.percentileMicros(0.50), test.percentileMicros(0.99));
+    }
+
+    private void logIn(String username, String password) throws Exception {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/sessions"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)).build(), HttpResponse.BodyHandlers.ofString());
+        Matcher m = TOKEN.matcher(response.body());
+        if (response.statusCode() != 201 || !m.find()) {
+            throw new IllegalStateException("Login as " + username + " failed: " + response.body());
+        }
+        token = m.group(1);
+    }
+
+    private void loadProductNames() throws Exception {
+        String body = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/products")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        Matcher m = NAME.matcher(body);
+        while (m.find()) productNames.add(m.group(1));
+        if (productNames.isEmpty()) throw new IllegalStateException("No products served by " + baseUrl);
+    }
+
+    private void runClient(int clientNo, long deadline) {
+        int n = clientNo;
+        while (System.nanoTime() < deadline) {
+            String product = URLEncoder.encode(productNames.get(n++ % productNames.size()), StandardCharsets.UTF_8)
+                    .replace("+", "%20");
+            if (n % 10 != 0) {
+                call("GET", "/api/products/" + product);
+            } else {
+                String cart = call("POST", "/api/carts");
+                Matcher m = cart == null ? null : CART_ID.matcher(cart);
+                if (m != null && m.find()) {
+                    String cartPath = "/api/carts/" + m.group(1);
+                    call("POST", cartPath + "/items?product=" + product + "&quantity=1");
+                    call("DELETE", cartPath);
+                }
+            }
+        }
+    }
+
+    private String call(String method, String path) {
+        long t0 = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .method(method, HttpRequest.BodyPublishers.noBody())
+                    .header("Authorization", "Bearer " + token)
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            // 409 (out of stock) is a valid answer under contention
+            if (response.statusCode() >= 400 && response.statusCode() != 409) errors.increment();
+            return response.body();
+        } catch (Exception e) {
+            errors.increment();
+            return null;
+        } finally {
+            requests.increment();
+            long micros = Math.max(1, (System.nanoTime() - t0) / 1000);
+            latencyBuckets.incrementAndGet(63 - Long.numberOfLeadingZeros(micros));
+        }
+    }
+
+    // Upper bound of the log2 bucket holding the given percentile
+    private long percentileMicros(double percentile) {
+        long total = 0;
+        for (int i = 0; i < latencyBuckets.length(); i++) total += latencyBuckets.get(i);
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < latencyBuckets.length(); i++) {
+            seen += latencyBuckets.get(i);
+            if (seen >= target && seen > 0) return (1L << (i + 1)) - 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,131 @@
+package api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.Product;
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.CredentialStore;
+import service.ProductService;
+import service.ReservationManager;
+import service.SalesService;
+
+class PosApiServerTest {
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+    private static final Pattern CART_ID = Pattern.compile("\"cartId\":\"([^\"]+)\"");
+
+    private PosApiServer server;
+    private String baseUrl;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ProductService products = new ProductService();
+        products.addProduct(new Product("Apple", 1.0, 10));
+        CredentialStore credentials = new CredentialStore();
+        // Not migrated, so a wrong password is rejected without the slow hash
+        credentials.addUser(new User("cashier", "cash123", "Cashier"));
+        server = new PosApiServer(new InetSocketAddress("127.0.0.1", 0), products, new SalesService(),
+                new ReservationManager(products, ReservationManager.DEFAULT_TTL_MILLIS), credentials);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void cartsNeedASessionToken() throws Exception {
+        assertEquals(401, call("POST", "/api/carts", null).statusCode());
+        assertEquals(401, call("POST", "/api/carts", "not-a-token").statusCode());
+
+        String token = logIn("cash123");
+        HttpResponse<String> cart = call("POST", "/api/carts", token);
+        assertEquals(201, cart.statusCode());
+        Matcher m = CART_ID.matcher(cart.body());
+        assertTrue(m.find());
+        String cartPath = "/api/carts/" + m.group(1);
+
+        assertEquals(401, call("POST", cartPath + "/items?product=Apple&quantity=2", null).statusCode());
+        assertEquals(200, call("POST", cartPath + "/items?product=Apple&quantity=2", token).statusCode());
+        assertEquals(401, call("POST", cartPath + "/checkout", null).statusCode());
+        // An unknown payment type is refused, and the cart stays open
+        assertEquals(400, call("POST", cartPath + "/checkout?payment=Bitcoin", token).statusCode());
+        assertEquals(200, call("GET", cartPath, token).statusCode());
+        assertEquals(200, call("POST", cartPath + "/checkout?payment=Card", token).statusCode());
+
+        assertEquals(204, call("DELETE", "/api/sessions/" + token, null).statusCode());
+        assertEquals(401, call("POST", "/api/carts", token).statusCode());
+    }
+
+    @Test
+    void cartsBelongToTheSessionThatOpenedThem() throws Exception {
+        String owner = logIn("cash123");
+        String other = logIn("cash123");
+        Matcher m = CART_ID.matcher(call("POST", "/api/carts", owner).body());
+        assertTrue(m.find());
+        String cartPath = "/api/carts/" + m.group(1);
+        assertEquals(200, call("POST", cartPath + "/items?product=Apple&quantity=1", owner).statusCode());
+
+        assertEquals(404, call("GET", cartPath, other).statusCode());
+        assertEquals(404, call("POST", cartPath + "/items?product=Apple&quantity=1", other).statusCode());
+        assertEquals(404, call("POST", cartPath + "/checkout", other).statusCode());
+        assertEquals(404, call("DELETE", cartPath, other).statusCode());
+        assertEquals(200, call("GET", cartPath, owner).statusCode());
+    }
+
+    @Test
+    void salesAndSummariesNeedASessionToken() throws Exception {
+        assertEquals(401, call("GET", "/api/sales/summary", null).statusCode());
+        assertEquals(401, call("GET", "/api/sales/summary?from=2024-01-01&to=2024-01-31", "not-a-token").statusCode());
+        assertEquals(401, call("GET", "/api/sales/TXN1", null).statusCode());
+
+        String token = logIn("cash123");
+        assertEquals(200, call("GET", "/api/sales/summary", token).statusCode());
+        assertEquals(404, call("GET", "/api/sales/TXN1", token).statusCode());
+    }
+
+    @Test
+    void loginAttemptsAreRateLimitedPerClient() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(401, login("wrong").statusCode());
+        }
+        HttpResponse<String> limited = login("cash123");
+        assertEquals(429, limited.statusCode());
+        assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+    }
+
+    private String logIn(String password) throws Exception {
+        HttpResponse<String> response = login(password);
+        assertEquals(201, response.statusCode(), response.body());
+        Matcher m = TOKEN.matcher(response.body());
+        assertTrue(m.find());
+        return m.group(1);
+    }
+
+    private HttpResponse<String> login(String password) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/sessions"))
+                .POST(HttpRequest.BodyPublishers.ofString("username=cashier&password=" + password)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> call(String method, String path, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        if (token != null) request.header("Authorization", "Bearer " + token);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,72 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import model.CustomerRegistry;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import payment.CashPayment;
+
+class SaleIdIndexTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 1);
+    private static final int COUNT = 100_000; // Past the first growth
+
+    @TempDir
+    Path dir;
+
+    // The "row" at an offset is the sale with that number; the reader confirms the ID as the ledger does
+    private static Sale find(SaleIdIndex index, String saleId) throws IOException {
+        return index.find(saleId, (day, offset) -> {
+            String stored = "TXN" + offset;
+            if (!day.equals(DAY.plusDays(offset % 7)) || !stored.equals(saleId)) return null;
+            return new Sale(stored, CustomerRegistry.intern("Anna", "Regular"), CashPayment.INSTANCE, 1, 0, 1,
+                    LocalDateTime.of(DAY, LocalTime.NOON));
+        });
+    }
+
+    @Test
+    void findsEveryIdAfterGrowingAndReopening() throws IOException {
+        Path file = dir.resolve("sale-ids.idx");
+        try (SaleIdIndex index = new SaleIdIndex(file)) {
+            for (int i = 0; i < COUNT; i++) index.put("TXN" + i, DAY.plusDays(i % 7), i);
+            assertEquals(COUNT, index.size());
+            assertEquals("TXN77777", find(index, "TXN77777").getSaleId());
+        }
+        try (SaleIdIndex index = new SaleIdIndex(file)) {
+            assertEquals(COUNT, index.size());
+            for (int i = 0; i < COUNT; i += 997) assertNotNull(find(index, "TXN" + i), "TXN" + i);
+            assertNull(find(index, "TXN" + COUNT));
+            assertNull(find(index, "missing"));
+        }
+    }
+
+    @Test
+    void aDamagedFileStartsEmpty() throws IOException {
+        Path file = dir.resolve("sale-ids.idx");
+        Files.write(file, new byte[64]);
+        try (SaleIdIndex index = new SaleIdIndex(file)) {
+            assertEquals(0, index.size());
+            index.put("TXN1", DAY.plusDays(1), 1);
+            assertNotNull(find(index, "TXN1"));
+        }
+    }
+
+    @Test
+    void clearDropsEveryEntry() throws IOException {
+        try (SaleIdIndex index = new SaleIdIndex(dir.resolve("sale-ids.idx"))) {
+            index.put("TXN3", DAY.plusDays(3), 3);
+            index.clear();
+            assertEquals(0, index.size());
+            assertNull(find(index, "TXN3"));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import model.CustomerRegistry;
+import model.DailySummary;
+import model.Product;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import payment.CardPayment;
+import payment.CashPayment;
+import service.SalesService;
+
+class SalesLedgerTest {
+    @TempDir
+    Path dir;
+
+    private static Sale sale(String id, String customer, double amount, LocalDateTime at) {
+        return new Sale(id, CustomerRegistry.intern(customer, "Regular"), CashPayment.INSTANCE, amount, 0, amount, at);
+    }
+
+    @Test
+    void customerNamesWithCommasSurviveReopen() throws IOException {
+        LocalDateTime yesterday = LocalDate.now().minusDays(1).atTime(9, 0);
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            ledger.append(sale("TXN1", "Smith, John", 25, yesterday));
+            ledger.append(sale("TXN2", "\"Jo\" Miller", 30, LocalDateTime.now()));
+            assertEquals("Smith, John", ledger.findSale("TXN1").getCustomer().getName());
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(2, ledger.getSaleCount());
+            Sale found = ledger.findSale("TXN1");
+            assertNotNull(found);
+            assertEquals("Smith, John", found.getCustomer().getName());
+            assertEquals("\"Jo\" Miller", ledger.findSale("TXN2").getCustomer().getName());
+            List<Sale> scanned = new ArrayList<>();
+            ledger.scan(LocalDateTime.MIN, LocalDateTime.MAX, scanned::add);
+            assertEquals(2, scanned.size());
+        }
+    }
+
+    @Test
+    void strayFilesThatLookLikeSegmentsAreIgnored() throws IOException {
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            ledger.append(sale("TXN1", "Anna", 10, LocalDateTime.now()));
+        }
+        Files.writeString(dir.resolve("sales-backup.csv"), "not,a,segment\n");
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(1, ledger.getSaleCount());
+            assertNotNull(ledger.findSale("TXN1"));
+            ledger.append(sale("TXN2", "Anna", 10, LocalDateTime.now()));
+            assertEquals(2, ledger.getSaleCount());
+        }
+    }
+
+    @Test
+    void compressedDaysSurviveReopenUnderCommaDecimalLocale() throws IOException {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            try (SalesLedger ledger = new SalesLedger(dir)) {
+                ledger.append(sale("TXN1", "Anna", 10.5, LocalDate.now().minusDays(2).atTime(9, 0)));
+                ledger.append(sale("TXN2", "Anna", 20.25, LocalDateTime.now()));
+            }
+            try (SalesLedger ledger = new SalesLedger(dir)) {
+                assertEquals(2, ledger.getSaleCount());
+                assertEquals(30.75, ledger.getTotalFinalAmount(), 1e-9);
+                assertEquals(10.5, ledger.findSale("TXN1").getFinalAmount(), 1e-9);
+            }
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    void lineItemsSurviveReopenAndCompression() throws IOException {
+        List<Product> items = new ArrayList<>();
+        for (int i = 0; i < 300; i++) items.add(new Product("Product number " + i + ", large", 1.5, i + 1));
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            // Rows far longer than one read, both in a closed day and in the open one
+            ledger.append(new Sale("TXN1", CustomerRegistry.intern("Anna", "Regular"), items, CashPayment.INSTANCE,
+                    10, 0, 10, LocalDate.now().minusDays(1).atTime(9, 0)));
+            ledger.append(new Sale("TXN2", CustomerRegistry.intern("Anna", "Regular"), items, CashPayment.INSTANCE,
+                    10, 0, 10, LocalDateTime.now()));
+            ledger.append(sale("TXN3", "Anna", 5, LocalDateTime.now()));
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            for (String id : List.of("TXN1", "TXN2")) {
+                List<Product> found = ledger.findSale(id).getProducts();
+                assertEquals(300, found.size(), id);
+                assertEquals("Product number 299, large", found.get(299).getName());
+                assertEquals(300, found.get(299).getQuantity());
+            }
+            assertEquals(0, ledger.findSale("TXN3").getProducts().size());
+        }
+    }
+
+    @Test
+    void scanFromResumesInAppendOrder() throws IOException {
+        LocalDateTime yesterday = LocalDate.now().minusDays(1).atTime(9, 0);
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            ledger.append(sale("TXN1", "Anna", 10, yesterday));
+            ledger.append(sale("TXN2", "Anna", 10, yesterday.plusHours(1)));
+            ledger.append(sale("TXN3", "Anna", 10, LocalDateTime.now()));
+            // Same timestamp as TXN3, so a resume by timestamp could not tell them apart
+            ledger.append(sale("TXN4", "Anna", 10, ledger.findSale("TXN3").getTimestamp()));
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(List.of("TXN1", "TXN2", "TXN3", "TXN4"), idsFrom(ledger, 0));
+            assertEquals(List.of("TXN3", "TXN4"), idsFrom(ledger, 2));
+            assertEquals(List.of("TXN4"), idsFrom(ledger, 3));
+            assertEquals(List.of(), idsFrom(ledger, 4));
+        }
+    }
+
+    @Test
+    void salesBeforeTheNewestDayAreRejected() throws IOException {
+        LocalDateTime yesterday = LocalDate.now().minusDays(1).atTime(9, 0);
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            ledger.append(sale("TXN1", "Anna", 10, yesterday));
+            ledger.append(sale("TXN2", "Anna", 20, LocalDateTime.now()));
+            assertThrows(IllegalArgumentException.class,
+                () -> ledger.append(sale("TXN3", "Anna", 30, yesterday.plusHours(1))));
+            assertEquals(2, ledger.getSaleCount());
+            assertNull(ledger.findSale("TXN3"));
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertThrows(IllegalArgumentException.class,
+                () -> ledger.append(sale("TXN3", "Anna", 30, yesterday.plusHours(1))));
+            assertEquals(30, ledger.getTotalFinalAmount(), 1e-9);
+            assertEquals(List.of("TXN1", "TXN2"), idsFrom(ledger, 0));
+        }
+    }
+
+    private static List<String> idsFrom(SalesLedger ledger, long position) throws IOException {
+        List<String> ids = new ArrayList<>();
+        ledger.scanFrom(position, sale -> ids.add(sale.getSaleId()));
+        return ids;
+    }
+
+    // Closed days with a mix of payment and customer types, then today
+    private static void appendDays(SalesLedger ledger, int closedDays) throws IOException {
+        LocalDate today = LocalDate.now();
+        int n = 0;
+        for (int d = closedDays; d >= 0; d--) {
+            LocalDateTime open = today.minusDays(d).atTime(8, 0);
+            for (int i = 0; i < 40; i++, n++) {
+                boolean vip = n % 5 == 0;
+                double total = 50 + (n * 37) % 500 + 0.25;
+                double discount = vip ? Math.round(total * 10) / 100.0 : 0;
+                ledger.append(new Sale("TXN" + n, CustomerRegistry.intern("Customer " + n % 17, vip ? "VIP" : "Regular"),
+                        n % 3 == 0 ? CardPayment.INSTANCE : CashPayment.INSTANCE, total, discount, total - discount,
+                        open.plusMinutes(10L * i)));
+            }
+        }
+    }
+
+    private static void assertSameTotals(DailySummary expected, DailySummary actual) {
+        assertEquals(expected.getSaleCount(), actual.getSaleCount());
+        assertEquals(expected.getTotalAmount(), actual.getTotalAmount(), 0.005);
+        assertEquals(expected.getDiscountAmount(), actual.getDiscountAmount(), 0.005);
+        assertEquals(expected.getFinalAmount(), actual.getFinalAmount(), 0.005);
+        assertEquals(expected.getByPaymentAndCustomerType().keySet(), actual.getByPaymentAndCustomerType().keySet());
+        for (String payment : expected.getByPaymentAndCustomerType().keySet()) {
+            for (String type : expected.getByPaymentAndCustomerType().get(payment).keySet()) {
+                assertEquals(expected.getByPaymentAndCustomerType().get(payment).get(type).getFinalAmount(),
+                        actual.getByPaymentAndCustomerType().get(payment).get(type).getFinalAmount(), 0.005);
+            }
+        }
+    }
+
+    @Test
+    void compactedSummariesMatchTheRawRows() throws IOException {
+        int days = 6;
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days);
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            appendDays(ledger, days);
+        }
+        DailySummary raw;
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            SalesService sales = new SalesService(ledger, 1);
+            raw = sales.getPeriodSummary(from, today);
+            assertEquals(days, ledger.compactClosedDays());
+            assertSameTotals(raw, sales.getPeriodSummary(from, today));
+            assertEquals(0, ledger.compactClosedDays());
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(days, ledger.getSummaryCount());
+            assertEquals(List.of(), ledger.checkSummaries());
+            assertEquals(0, ledger.compactClosedDays());
+            SalesService sales = new SalesService(ledger, 1);
+            assertSameTotals(raw, sales.getPeriodSummary(from, today));
+            for (LocalDate day = from; day.isBefore(today); day = day.plusDays(1)) {
+                DailySummary summed = new DailySummary(day);
+                ledger.scan(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), summed::add);
+                assertSameTotals(summed, ledger.getSummary(day));
+            }
+        }
+    }
+
+    @Test
+    void reopeningACompactedDayDropsItsSummary() throws IOException {
+        LocalDate day = LocalDate.now().minusDays(1);
+        // Nothing sold today yet, so yesterday is still the newest day, as on a till closed overnight
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            for (int i = 0; i < 10; i++) {
+                ledger.append(sale("TXN" + i, "Anna", 10 + i, day.minusDays(1 - i / 5).atTime(9, i)));
+            }
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(2, ledger.compactClosedDays());
+            DailySummary before = ledger.getSummary(day);
+            assertNotNull(before);
+
+            ledger.append(sale("TXN-late", "Anna", 99, day.atTime(23, 0)));
+            assertNull(ledger.getSummary(day));
+            assertNotNull(ledger.getSummary(day.minusDays(1)));
+            // Reports fall back to the raw rows, the new sale included
+            DailySummary after = new SalesService(ledger, 1).getDailySummary(day);
+            assertEquals(before.getSaleCount() + 1, after.getSaleCount());
+            assertEquals(before.getFinalAmount() + 99, after.getFinalAmount(), 0.005);
+            assertEquals(List.of(), ledger.checkSummaries());
+        }
+    }
+
+    @Test
+    void appendsAreNotBlockedByAScanAndNotSeenByIt() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            ledger.append(sale("TXN1", "Anna", 10, now.minusDays(1)));
+            ledger.append(sale("TXN2", "Anna", 20, now));
+            CountDownLatch scanning = new CountDownLatch(1);
+            CountDownLatch appended = new CountDownLatch(1);
+            List<String> seen = new ArrayList<>();
+            Thread scanner = new Thread(() -> {
+                try {
+                    ledger.scan(LocalDateTime.MIN, LocalDateTime.MAX, sale -> {
+                        seen.add(sale.getSaleId());
+                        scanning.countDown();
+                        try {
+                            appended.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            scanner.start();
+            scanning.await();
+
+            // The scanner is parked inside its callback; checkout must still get through
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> ledger.append(sale("TXN3", "Anna", 30, now)));
+            appended.countDown();
+            scanner.join();
+
+            assertEquals(List.of("TXN1", "TXN2"), seen);
+            assertEquals(3, ledger.getSaleCount());
+            assertNotNull(ledger.findSale("TXN3"));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CustomerRegistryTest {
+    @Test
+    void sameNameAndTypeShareOneCustomer() {
+        Customer anna = CustomerRegistry.intern(new String("Anna"), "Regular");
+        assertSame(anna, CustomerRegistry.intern(new String("Anna"), "Regular"));
+        Customer vip = CustomerRegistry.intern("Anna", "VIP");
+        assertNotSame(anna, vip);
+        assertEquals("VIP", vip.getCustomerType());
+        assertSame(vip, CustomerRegistry.intern("Anna", "VIP"));
+    }
+
+    @Test
+    void unreferencedCustomersAreReleased() throws InterruptedException {
+        List<Customer> held = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Customer customer = CustomerRegistry.intern("Walk-in " + i, "Regular");
+            if (i < 10) held.add(customer);
+        }
+        for (int attempt = 0; attempt < 50 && CustomerRegistry.size() >= 1_000; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(CustomerRegistry.size() < 1_000, "size " + CustomerRegistry.size());
+        for (int i = 0; i < 10; i++) {
+            assertSame(held.get(i), CustomerRegistry.intern("Walk-in " + i, "Regular"));
+        }
+    }
+}
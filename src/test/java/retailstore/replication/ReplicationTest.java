@@ -0,0 +1,180 @@
+package replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import ledger.SalesLedger;
+import model.CustomerRegistry;
+import model.Product;
+import model.Sale;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import payment.CashPayment;
+import service.ProductService;
+import service.SalesService;
+import util.StoreUtils;
+
+class ReplicationTest {
+    @TempDir
+    Path dir;
+
+    private ProductService products;
+    private SalesLedger ledger;
+    private SalesService sales;
+    private ReplicationPrimary primary;
+    private int checkouts;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        products = new ProductService();
+        List<Product> catalog = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            catalog.add(new Product(i % 5 == 0 ? "Item " + i + ", boxed" : "Item " + i, 10 + i, 1000));
+        }
+        products.addProducts(catalog);
+        ledger = new SalesLedger(dir.resolve("primary").resolve("ledger"));
+        sales = new SalesService(ledger, 7);
+        primary = new ReplicationPrimary(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), products, sales);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        primary.close();
+        ledger.close();
+    }
+
+    // Takes stock for two items and records the sale, as a till checkout does
+    private void checkout() throws IOException {
+        List<Product> items = new ArrayList<>();
+        for (int j = 0; j < 2; j++) {
+            Product p = products.getAllProducts().get((checkouts * 3 + j * 7) % products.getProductCount());
+            if (products.adjustStock(p.getName(), -1)) items.add(new Product(p.getName(), p.getPrice(), 1));
+        }
+        sales.addSale(sales.createSale(sales.nextSaleId(),
+                CustomerRegistry.intern("Customer " + checkouts % 13, checkouts % 4 == 0 ? "VIP" : "Regular"),
+                products.priceItems(items), checkouts % 2 == 0 ? "Cash" : "Card"));
+        checkouts++;
+    }
+
+    private ReplicationStandby startStandby(Path workDir) throws IOException {
+        ReplicationStandby standby = new ReplicationStandby(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), primary.getPort()), workDir);
+        Thread thread = new Thread(standby::run, "standby");
+        thread.setDaemon(true);
+        thread.start();
+        return standby;
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + what);
+            Thread.sleep(20);
+        }
+    }
+
+    private void assertConverged(Path workDir) throws IOException {
+        Path data = workDir.resolve("data");
+        try (SalesLedger standbyLedger = new SalesLedger(data.resolve("ledger"))) {
+            assertEquals(ledger.getSaleCount(), standbyLedger.getSaleCount());
+            assertEquals(ledger.getTotalFinalAmount(), standbyLedger.getTotalFinalAmount(), 0.005);
+        }
+        List<Product> expected = products.getAllProducts();
+        List<Product> actual = StoreUtils.loadProductsFromCSV(data.resolve("products.csv").toString());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getQuantity(), actual.get(i).getQuantity(), expected.get(i).getName());
+            assertEquals(expected.get(i).getPrice(), actual.get(i).getPrice(), 0.005);
+        }
+    }
+
+    @Test
+    void standbyCatchesUpThenFollowsAndConverges() throws Exception {
+        // An earlier, already compressed day first, so catch-up crosses segments
+        sales.addSale(new Sale("TXN-old", CustomerRegistry.intern("Anna", "Regular"), CashPayment.INSTANCE,
+                25, 0, 25, LocalDateTime.now().minusDays(3)));
+        for (int i = 0; i < 40; i++) checkout();
+
+        Path workDir = dir.resolve("standby");
+        ReplicationStandby standby = startStandby(workDir);
+        waitFor("catch-up", () -> standby.getAppliedSales() == 41);
+
+        for (int i = 0; i < 60; i++) checkout();
+        products.updatePrices(Map.of("Item 3", 99.0));
+        products.removeProduct(products.findProductByName("Item 19"));
+        waitFor("live stream", () -> standby.getAppliedSales() == 101
+                && standby.getLastSequence() >= primary.getLastSequence());
+        assertEquals(0, standby.getDuplicateSales());
+        standby.stop();
+
+        assertConverged(workDir);
+    }
+
+    @Test
+    void restartedStandbyResumesFromItsLedger() throws Exception {
+        for (int i = 0; i < 30; i++) checkout();
+        Path workDir = dir.resolve("standby");
+        ReplicationStandby first = startStandby(workDir);
+        waitFor("catch-up", () -> first.getAppliedSales() == 30);
+        first.stop();
+
+        for (int i = 0; i < 10; i++) checkout();
+        ReplicationStandby second = startStandby(workDir);
+        waitFor("resume", () -> second.getAppliedSales() == 10
+                && second.getLastSequence() >= primary.getLastSequence());
+        // Only the sales it had not seen were sent again
+        assertEquals(0, second.getDuplicateSales());
+        second.stop();
+
+        assertConverged(workDir);
+    }
+
+    @Test
+    void closingThePrimarySendsWhatIsAlreadyQueued() throws Exception {
+        Path workDir = dir.resolve("standby");
+        ReplicationStandby standby = startStandby(workDir);
+        checkout();
+        waitFor("catch-up", () -> standby.getAppliedSales() == 1);
+
+        for (int i = 0; i < 500; i++) checkout();
+        primary.close();
+        waitFor("queued sales", () -> standby.getAppliedSales() == 501);
+        standby.stop();
+        assertConverged(workDir);
+    }
+
+    @Test
+    void salesLargerThan64KiBReplicate() throws Exception {
+        List<Product> basket = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) basket.add(new Product("Très long article n° " + i + ", boxed", 1.5, 1));
+        sales.addSale(new Sale("TXN1", CustomerRegistry.intern("Anna", "Regular"), basket, CashPayment.INSTANCE,
+                4500, 0, 4500, LocalDateTime.now()));
+        assertTrue(StoreUtils.formatSaleCSV(sales.findSale("TXN1")).length() > 65535);
+
+        Path workDir = dir.resolve("standby");
+        ReplicationStandby standby = startStandby(workDir);
+        waitFor("catch-up", () -> standby.getAppliedSales() == 1);
+        sales.addSale(new Sale("TXN2", CustomerRegistry.intern("Anna", "Regular"), basket, CashPayment.INSTANCE,
+                4500, 0, 4500, LocalDateTime.now()));
+        waitFor("live stream", () -> standby.getAppliedSales() == 2);
+        standby.stop();
+
+        try (SalesLedger standbyLedger = new SalesLedger(workDir.resolve("data").resolve("ledger"))) {
+            assertEquals(3000, standbyLedger.findSale("TXN2").getProducts().size());
+        }
+        assertConverged(workDir);
+    }
+}
@@ -0,0 +1,40 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CredentialStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void plaintextPasswordsWorkUntilMigratedAndAfter() throws IOException {
+        Path file = dir.resolve("users.csv");
+        Files.write(file, List.of("username,password,role", "admin,admin123,Admin"));
+        CredentialStore credentials = new CredentialStore();
+
+        credentials.load(file.toString());
+        assertNotNull(credentials.authenticate("admin", "admin123"));
+        assertTrue(Files.readString(file).contains("admin123"));
+
+        assertEquals(1, credentials.migratePlaintext(file.toString()));
+        assertFalse(Files.readString(file).contains("admin123"));
+        assertTrue(PasswordHasher.isHashed(credentials.getUser("admin").getPassword()));
+        assertEquals(0, credentials.migratePlaintext(file.toString()));
+
+        CredentialStore reloaded = new CredentialStore();
+        reloaded.load(file.toString());
+        assertNotNull(reloaded.authenticate("admin", "admin123"));
+        assertNull(reloaded.authenticate("admin", "wrong"));
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProductServiceTest {
+    private ProductService products;
+
+    @BeforeEach
+    void setUp() {
+        products = new ProductService();
+        products.addProduct(new Product("Apple", 1.0, 10));
+        products.addProduct(new Product("Pear", 2.0, 5));
+    }
+
+    @Test
+    void snapshotsKeepTheStockTheyWereTakenWith() {
+        CatalogSnapshot before = products.snapshot();
+
+        assertTrue(products.adjustStock("Apple", -3));
+        products.updateProductStock("Pear", 9);
+
+        assertEquals(10, before.find("Apple").getQuantity());
+        assertEquals(5, before.getProducts().get(1).getQuantity());
+        CatalogSnapshot after = products.snapshot();
+        assertEquals(7, after.find("Apple").getQuantity());
+        assertEquals(9, after.find("Pear").getQuantity());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+    }
+
+    @Test
+    void stockChangesPublishOneVersionWhenRead() {
+        CatalogSnapshot before = products.snapshot();
+        for (int i = 0; i < 5; i++) products.adjustStock("Apple", -1);
+        assertEquals(5, products.getStock("Apple"));
+
+        CatalogSnapshot after = products.snapshot();
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertSame(after, products.snapshot());
+    }
+
+    @Test
+    void lookupsReadLiveStockWithoutPublishing() {
+        CatalogSnapshot before = products.snapshot();
+        for (int i = 1; i <= 3; i++) {
+            products.adjustStock("Apple", -1);
+            assertEquals(10 - i, products.findProductByName("Apple").getQuantity());
+            assertEquals(1.0, products.priceItems(List.of(new Product("Apple", 0, 1))).get(0).getPrice());
+        }
+        assertSame(before.find("Pear"), products.findProductByName("Pear"));
+        // The lookups published nothing; the snapshot folds all three changes into one version
+        assertEquals(before.getVersion() + 1, products.snapshot().getVersion());
+    }
+
+    @Test
+    void priceChangesKeepPendingStock() {
+        CatalogSnapshot before = products.snapshot();
+        products.adjustStock("Apple", -4);
+        products.updatePrices(Map.of("Apple", 1.5));
+
+        Product apple = products.findProductByName("Apple");
+        assertEquals(1.5, apple.getPrice());
+        assertEquals(6, apple.getQuantity());
+        assertEquals(1.0, products.getSnapshotAt(before.getPublishedAt()).find("Apple").getPrice());
+        assertEquals(10, before.find("Apple").getQuantity());
+    }
+
+    @Test
+    void listenersSeeCurrentStock() {
+        List<String> seen = new ArrayList<>();
+        products.addChangeListener((name, current) -> seen.add(name + ":" + current.getQuantity()));
+
+        products.adjustStock("Apple", -2);
+        products.holdStock("Pear", 1);
+
+        assertEquals(List.of("Apple:8", "Pear:4"), seen);
+    }
+
+    @Test
+    void removedAndReaddedProductsStayFindable() {
+        // Each cycle leaves a tombstone for the next add to reuse
+        for (int i = 0; i < 10_000; i++) {
+            products.addProduct(new Product("Plum", 3.0, i));
+            assertTrue(products.adjustStock("Plum", 1));
+            products.removeProduct(new Product("Plum", 3.0, 0));
+            assertNull(products.findProductByName("Plum"));
+            assertEquals(-1, products.getStock("Plum"));
+        }
+        assertEquals(10, products.getStock("Apple"));
+        assertEquals(2, products.getProductCount());
+        assertEquals(2, products.snapshot().size());
+    }
+}
@@ -0,0 +1,183 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReservationManagerTest {
+    private ProductService products;
+    private ReservationManager reservations;
+    private final List<String> expired = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        products = new ProductService();
+        products.addProduct(new Product("Apple", 1.0, 10));
+        products.addProduct(new Product("Pear", 2.0, 5));
+        reservations = new ReservationManager(products, 3000, false); // three ticks
+        reservations.addExpiryListener((owner, name, quantity) -> expired.add(owner + ":" + name + ":" + quantity));
+    }
+
+    @Test
+    void heldStockStaysOnHand() {
+        assertTrue(reservations.reserve("c1", "Apple", 4));
+
+        assertEquals(6, products.getStock("Apple"));
+        assertEquals(4, products.getHeldStock("Apple"));
+        assertEquals(10, onHand("Apple"));
+        assertEquals(4, reservations.getReservedQuantity("Apple"));
+    }
+
+    @Test
+    void holdsExpireAfterTheirTtl() {
+        reservations.reserve("c1", "Apple", 4);
+        reservations.reserve("c2", "Pear", 1);
+
+        reservations.tick();
+        reservations.tick();
+        assertEquals(4, reservations.getHeld("c1", "Apple"));
+        assertTrue(expired.isEmpty());
+
+        reservations.tick();
+        assertEquals(0, reservations.getHeld("c1", "Apple"));
+        assertEquals(10, products.getStock("Apple"));
+        assertEquals(0, products.getHeldStock("Apple"));
+        assertEquals(5, products.getStock("Pear"));
+        assertEquals(List.of("c1:Apple:4", "c2:Pear:1"), sorted(expired));
+        assertEquals(2, reservations.getExpiredHolds());
+        assertEquals(5, reservations.getExpiredUnits());
+        assertEquals(0, reservations.getActiveHolds());
+        assertTrue(reservations.getReservedByProduct().isEmpty());
+    }
+
+    @Test
+    void aFailingReleaseDoesNotStopTheWheel() {
+        ProductService failing = new ProductService() {
+            @Override
+            public synchronized boolean holdStock(String name, int delta) {
+                if (delta < 0 && name.equals("Pear")) throw new IllegalStateException("store unavailable");
+                return super.holdStock(name, delta);
+            }
+        };
+        failing.addProduct(new Product("Apple", 1.0, 10));
+        failing.addProduct(new Product("Pear", 2.0, 5));
+        ReservationManager manager = new ReservationManager(failing, 3000, false);
+        manager.reserve("c1", "Pear", 1);
+        manager.reserve("c2", "Apple", 4);
+
+        for (int i = 0; i < 3; i++) manager.tick();
+        // The Apple hold in the same bucket still expired, and the failed one is kept for a retry
+        assertEquals(10, failing.getStock("Apple"));
+        assertEquals(1, manager.getHeld("c1", "Pear"));
+
+        manager.reserve("c3", "Apple", 2);
+        for (int i = 0; i < 3; i++) manager.tick();
+        assertEquals(10, failing.getStock("Apple"));
+    }
+
+    @Test
+    void activityRenewsEveryHoldOfTheCart() {
+        reservations.reserve("c1", "Apple", 1);
+        reservations.tick();
+        reservations.reserve("c1", "Pear", 1);
+        reservations.tick();
+        reservations.touch("c1"); // both now due three ticks from here
+
+        reservations.tick();
+        reservations.tick();
+        assertEquals(1, reservations.getHeld("c1", "Apple"));
+        assertEquals(1, reservations.getHeld("c1", "Pear"));
+
+        reservations.tick();
+        assertEquals(0, reservations.getHeld("c1", "Apple"));
+        assertEquals(0, reservations.getHeld("c1", "Pear"));
+        assertEquals(2, expired.size());
+    }
+
+    @Test
+    void holdsLongerThanOneRevolutionWaitForTheirTick() {
+        ReservationManager longHolds = new ReservationManager(products, 600_000, false); // 600 ticks, wheel has 512
+        longHolds.reserve("c1", "Apple", 2);
+
+        for (int i = 0; i < 599; i++) longHolds.tick();
+        assertEquals(2, longHolds.getHeld("c1", "Apple"));
+
+        longHolds.tick();
+        assertEquals(0, longHolds.getHeld("c1", "Apple"));
+        assertEquals(10, products.getStock("Apple"));
+    }
+
+    @Test
+    void releaseGivesStockBack() {
+        reservations.reserve("c1", "Apple", 3);
+        reservations.reserve("c1", "Pear", 2);
+
+        assertEquals(3, reservations.release("c1", "Apple"));
+        assertEquals(10, products.getStock("Apple"));
+        assertEquals(0, products.getHeldStock("Apple"));
+
+        reservations.releaseAll("c1");
+        assertEquals(5, products.getStock("Pear"));
+        assertEquals(0, reservations.getActiveHolds());
+        assertEquals(0, reservations.getReservedUnits());
+
+        // Released holds are off the wheel
+        for (int i = 0; i < 5; i++) reservations.tick();
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void checkoutSellsHeldStock() {
+        reservations.reserve("c1", "Apple", 3);
+
+        reservations.commitAll("c1");
+
+        assertEquals(7, products.getStock("Apple"));
+        assertEquals(0, products.getHeldStock("Apple"));
+        assertEquals(7, onHand("Apple"));
+        assertTrue(reservations.getReservedByProduct().isEmpty());
+    }
+
+    @Test
+    void reservingBackToZeroLeavesNoEntry() {
+        reservations.reserve("c1", "Apple", 2);
+        reservations.reserve("c2", "Apple", 1);
+        assertTrue(reservations.reserve("c1", "Apple", -2));
+
+        assertEquals(1, reservations.getReservedByProduct().get("Apple"));
+        assertTrue(reservations.reserve("c2", "Apple", -1));
+        assertTrue(reservations.getReservedByProduct().isEmpty());
+        assertEquals(0, reservations.getActiveHolds());
+    }
+
+    @Test
+    void shortStockChangesNothing() {
+        assertFalse(reservations.reserve("c1", "Pear", 6));
+        assertFalse(reservations.reserve("c1", "Pear", -1));
+        assertFalse(reservations.reserve("c1", "Missing", 1));
+
+        assertEquals(5, products.getStock("Pear"));
+        assertEquals(0, products.getHeldStock("Pear"));
+        assertEquals(0, reservations.getActiveHolds());
+        assertTrue(reservations.getReservedByProduct().isEmpty());
+    }
+
+    private int onHand(String name) {
+        for (Product p : products.getOnHandProducts()) {
+            if (p.getName().equals(name)) return p.getQuantity();
+        }
+        return -1;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        copy.sort(null);
+        return copy;
+    }
+}
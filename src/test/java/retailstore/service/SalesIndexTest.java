@@ -0,0 +1,108 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.CustomerRegistry;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import payment.CardPayment;
+import payment.CashPayment;
+
+class SalesIndexTest {
+    private static final String[] CUSTOMERS = {"Anna", "Ben", "Smith, John", "Dora", "Eve"};
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    // Mostly in time order with some late arrivals, and amounts and times that repeat so ties are ranked
+    private static List<Sale> sales() {
+        Random random = new Random(42);
+        List<Sale> sales = new ArrayList<>();
+        for (int n = 0; n < 2000; n++) {
+            long minutes = random.nextInt(10) == 0 ? random.nextInt(n + 1) : n;
+            double amount = 5 + random.nextInt(40);
+            sales.add(new Sale("TXN" + (1000 + n),
+                    CustomerRegistry.intern(CUSTOMERS[random.nextInt(CUSTOMERS.length)], random.nextBoolean() ? "VIP" : "Regular"),
+                    random.nextBoolean() ? CashPayment.INSTANCE : CardPayment.INSTANCE, amount, 0, amount,
+                    START.plusMinutes(minutes / 2)));
+        }
+        return sales;
+    }
+
+    // A query together with the order and page it asks for
+    private static final class Case {
+        final SalesQuery query;
+        final SalesQuery.Sort sort;
+        final int pageIndex;
+        final int pageSize;
+
+        Case(SalesQuery query, SalesQuery.Sort sort, int pageIndex, int pageSize) {
+            this.query = query.sortBy(sort).page(pageIndex, pageSize);
+            this.sort = sort;
+            this.pageIndex = pageIndex;
+            this.pageSize = pageSize;
+        }
+    }
+
+    private static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        for (SalesQuery.Sort sort : SalesQuery.Sort.values()) {
+            cases.add(new Case(new SalesQuery(), sort, 0, 100));
+            cases.add(new Case(new SalesQuery(), sort, 7, 25));
+            cases.add(new Case(new SalesQuery().customer(" smith, JOHN "), sort, 2, 10));
+            cases.add(new Case(new SalesQuery().customerType("VIP").paymentType("Card"), sort, 1, 30));
+            cases.add(new Case(new SalesQuery().customer("nobody"), sort, 0, 10));
+            cases.add(new Case(new SalesQuery().amountBetween(12.0, 20.0)
+                    .between(START.plusMinutes(100), START.plusMinutes(700)), sort, 3, 15));
+            cases.add(new Case(new SalesQuery().paymentType("Cash").between(START.plusMinutes(500), null), sort, 0, 40));
+        }
+        return cases;
+    }
+
+    // Filter everything, sort with the query's order and cut the page
+    private static SalesQuery.Result bruteForce(List<Sale> sales, Case c, LocalDateTime notBefore) {
+        List<Sale> matches = new ArrayList<>();
+        for (Sale sale : sales) {
+            if (c.query.matches(sale) && !sale.getTimestamp().isBefore(notBefore)) matches.add(sale);
+        }
+        matches.sort(c.sort.comparator);
+        int offset = c.pageIndex * c.pageSize;
+        List<Sale> page = matches.subList(Math.min(offset, matches.size()), Math.min(offset + c.pageSize, matches.size()));
+        return new SalesQuery.Result(new ArrayList<>(page), matches.size());
+    }
+
+    private static List<String> ids(List<Sale> sales) {
+        List<String> ids = new ArrayList<>();
+        for (Sale sale : sales) ids.add(sale.getSaleId());
+        return ids;
+    }
+
+    private static void assertSameAsBruteForce(List<Sale> sales, SalesIndex index, LocalDateTime notBefore) {
+        for (Case c : cases()) {
+            SalesQuery.Collector collector = c.query.newCollector();
+            index.query(c.query, notBefore, collector);
+            SalesQuery.Result actual = collector.result();
+            SalesQuery.Result expected = bruteForce(sales, c, notBefore);
+            assertEquals(expected.getTotalMatches(), actual.getTotalMatches());
+            assertEquals(ids(expected.getSales()), ids(actual.getSales()));
+        }
+    }
+
+    @Test
+    void indexedQueriesMatchAFullFilterAndSort() {
+        List<Sale> sales = sales();
+        SalesIndex index = new SalesIndex();
+        sales.forEach(index::add);
+        assertSameAsBruteForce(sales, index, LocalDateTime.MIN);
+    }
+
+    @Test
+    void salesBeforeTheResidentStartAreLeftOut() {
+        List<Sale> sales = sales();
+        SalesIndex index = new SalesIndex();
+        sales.forEach(index::add);
+        assertSameAsBruteForce(sales, index, START.plusMinutes(400));
+    }
+}
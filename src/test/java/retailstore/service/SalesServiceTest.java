@@ -0,0 +1,159 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import ledger.SalesLedger;
+import model.CustomerRegistry;
+import model.Product;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import payment.CardPayment;
+import payment.CashPayment;
+
+class SalesServiceTest {
+    private static final String[] CUSTOMERS = {"Anna", "Ben", "Smith, John", "Dora"};
+
+    @TempDir
+    Path dir;
+
+    // Five closed days plus today, several sales per day with repeating amounts so ties are ranked too
+    private static List<Sale> history() {
+        List<Sale> sales = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        int n = 0;
+        for (int d = 5; d >= 0; d--) {
+            LocalDateTime day = today.minusDays(d).atStartOfDay();
+            for (int i = 0; i < 12; i++, n++) {
+                String customer = CUSTOMERS[n % CUSTOMERS.length];
+                String type = n % 3 == 0 ? "VIP" : "Regular";
+                double amount = 5 + (n * 7) % 40;
+                sales.add(new Sale("TXN" + (1000 + n), CustomerRegistry.intern(customer, type),
+                        n % 2 == 0 ? CashPayment.INSTANCE : CardPayment.INSTANCE, amount, 0, amount,
+                        day.plusMinutes(30L * i)));
+            }
+        }
+        return sales;
+    }
+
+    private static List<SalesQuery> queries() {
+        LocalDate today = LocalDate.now();
+        List<SalesQuery> queries = new ArrayList<>();
+        for (SalesQuery.Sort sort : SalesQuery.Sort.values()) {
+            queries.add(new SalesQuery().sortBy(sort).page(0, 10));
+            queries.add(new SalesQuery().sortBy(sort).page(3, 7));
+            queries.add(new SalesQuery().sortBy(sort).customer(" smith, JOHN ").page(1, 5));
+            queries.add(new SalesQuery().sortBy(sort).customerType("VIP").paymentType("Cash").page(0, 50));
+            queries.add(new SalesQuery().sortBy(sort).amountBetween(10.0, 30.0)
+                    .between(today.minusDays(4).atTime(3, 0), today.minusDays(1).atTime(2, 0)).page(2, 4));
+        }
+        return queries;
+    }
+
+    private static void assertSameResult(SalesQuery.Result expected, SalesQuery.Result actual) {
+        assertEquals(expected.getTotalMatches(), actual.getTotalMatches());
+        assertEquals(ids(expected.getSales()), ids(actual.getSales()));
+    }
+
+    private static List<String> ids(List<Sale> sales) {
+        List<String> ids = new ArrayList<>();
+        for (Sale sale : sales) ids.add(sale.getSaleId());
+        return ids;
+    }
+
+    @Test
+    void olderHistoryPagesLikeResidentHistory() throws IOException {
+        SalesService inMemory = new SalesService();
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            for (Sale sale : history()) {
+                inMemory.addSale(sale);
+                ledger.append(sale);
+            }
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            SalesService service = new SalesService(ledger, 1);
+            // Closed days not compacted yet are scanned
+            for (SalesQuery query : queries()) {
+                assertSameResult(inMemory.querySales(query), service.querySales(query));
+            }
+            assertEquals(5, ledger.compactClosedDays());
+            // and once compacted are served from their row indexes
+            for (SalesQuery query : queries()) {
+                assertSameResult(inMemory.querySales(query), service.querySales(query));
+            }
+        }
+        // The row indexes are kept across restarts
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            assertEquals(0, ledger.compactClosedDays());
+            SalesService service = new SalesService(ledger, 1);
+            for (SalesQuery query : queries()) {
+                assertSameResult(inMemory.querySales(query), service.querySales(query));
+            }
+        }
+    }
+
+    @Test
+    void refundsOfOlderSalesRestockTheirItems() throws IOException {
+        List<Product> items = List.of(new Product("Apple", 1.0, 3), new Product("Pear", 2.0, 1));
+        Sale old = new Sale("TXN1", CustomerRegistry.intern("Anna", "Regular"), items, CashPayment.INSTANCE,
+                5, 0, 5, LocalDate.now().minusDays(3).atTime(9, 0));
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            new SalesService(ledger, 1).addSale(old);
+        }
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            SalesService service = new SalesService(ledger, 1);
+            assertTrue(service.getAllSales().isEmpty());
+            List<String> restocked = new ArrayList<>();
+            SalesService.Refund refund = service.refundSale("TXN1", p -> restocked.add(p.getName() + ":" + p.getQuantity()));
+            assertEquals(List.of("Apple:3", "Pear:1"), restocked);
+            assertTrue(refund.getNotRestocked().isEmpty());
+            assertEquals(-5, refund.getSale().getFinalAmount(), 1e-9);
+        }
+    }
+
+    @Test
+    void itemsThatCannotBeRestockedAreReported() throws IOException {
+        ProductService products = new ProductService();
+        products.addProduct(new Product("Apple", 1.0, 10));
+        List<Product> items = List.of(new Product("Apple", 1.0, 2), new Product("Discontinued", 2.0, 1));
+        SalesService service = new SalesService();
+        service.addSale(new Sale("TXN1", CustomerRegistry.intern("Anna", "Regular"), items, CashPayment.INSTANCE,
+                4, 0, 4, LocalDateTime.now()));
+
+        SalesService.Refund refund = service.refundSale("TXN1", p -> products.adjustStock(p.getName(), p.getQuantity()));
+        assertEquals(12, products.getStock("Apple"));
+        assertEquals(1, refund.getNotRestocked().size());
+        assertEquals("Discontinued", refund.getNotRestocked().get(0).getName());
+        assertNotNull(service.findSale("RFDTXN1"));
+    }
+
+    @Test
+    void daysLeavingTheResidentWindowAreEvicted() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        try (SalesLedger ledger = new SalesLedger(dir)) {
+            SalesService service = new SalesService(ledger, 2);
+            service.addSale(new Sale("TXN1", CustomerRegistry.intern("Anna", "Regular"), CashPayment.INSTANCE, 10, 0, 10, now));
+            service.addSale(new Sale("TXN2", CustomerRegistry.intern("Ben", "Regular"), CashPayment.INSTANCE, 20, 0, 20, now));
+            assertEquals(2, service.getAllSales().size());
+
+            service.evictClosedDays(LocalDate.now().plusDays(1));
+            assertEquals(2, service.getAllSales().size());
+
+            service.evictClosedDays(LocalDate.now().plusDays(2));
+            assertTrue(service.getAllSales().isEmpty());
+            // Still on disk: found through the ledger
+            assertNotNull(service.findSale("TXN1"));
+            SalesQuery.Result all = service.querySales(new SalesQuery().sortBy(SalesQuery.Sort.OLDEST_FIRST));
+            assertEquals(List.of("TXN1", "TXN2"), ids(all.getSales()));
+            assertEquals(2, all.getTotalMatches());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogImporterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedNamesKeepCommasAndQuotes() throws IOException {
+        CatalogImporter.Result result = parse("name,price,quantity\n"
+                + "\"Tea, green\",1.50,3\n"
+                + "\"Say \"\"hi\"\"\",2,1\n"
+                + "Plain,0.99,7\n", 1);
+
+        List<Product> products = result.getProducts();
+        assertEquals(3, products.size());
+        assertEquals("Tea, green", products.get(0).getName());
+        assertEquals("Say \"hi\"", products.get(1).getName());
+        assertEquals("Plain", products.get(2).getName());
+        assertEquals(0, result.getBadRows());
+    }
+
+    @Test
+    void malformedQuotesAreReportedWithTheirLine() throws IOException {
+        CatalogImporter.Result result = parse("name,price,quantity\n"
+                + "Good,1,1\n"
+                + "\"Open,1,1\n"
+                + "\"Closed\"x,1,1\n", 1);
+
+        assertEquals(1, result.getProducts().size());
+        assertEquals(2, result.getBadRows());
+        assertEquals(List.of("line 3: unterminated quote", "line 4: text after closing quote"), result.getErrors());
+    }
+
+    @Test
+    void crlfAndByteOrderMarkAreIgnored() throws IOException {
+        byte[] body = "name,price,quantity\r\nApple,1.25,4\r\n\"Pear, ripe\",2.5,6\r\n".getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[body.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(body, 0, withBom, 3, body.length);
+        Path file = dir.resolve("crlf.csv");
+        Files.write(file, withBom);
+
+        CatalogImporter.Result result = CatalogImporter.parse(file, 1);
+
+        assertEquals(0, result.getBadRows(), result.getErrors().toString());
+        assertEquals(2, result.getProducts().size());
+        assertEquals("Apple", result.getProducts().get(0).getName());
+        assertEquals(4, result.getProducts().get(0).getQuantity());
+        assertEquals("Pear, ripe", result.getProducts().get(1).getName());
+        assertEquals(6, result.getProducts().get(1).getQuantity());
+    }
+
+    @Test
+    void chunkBoundariesKeepOrderRowsAndLineNumbers() throws IOException {
+        // Well over the 1 MB minimum chunk, so several threads each get a slice
+        int rows = 120_000;
+        int badLine = 100_000; // past the first chunk
+        StringBuilder sb = new StringBuilder("name,price,quantity\r\n");
+        for (int i = 1; i <= rows; i++) {
+            if (i + 1 == badLine) {
+                sb.append("broken row\r\n");
+            } else {
+                sb.append("\"Item, number ").append(i).append("\",").append(i % 1000).append(".25,").append(i).append("\r\n");
+            }
+        }
+        Path file = dir.resolve("big.csv");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue(Files.size(file) > 3 << 20);
+
+        CatalogImporter.Result single = CatalogImporter.parse(file, 1);
+        CatalogImporter.Result parallel = CatalogImporter.parse(file, 4);
+
+        for (CatalogImporter.Result result : List.of(single, parallel)) {
+            assertEquals(rows - 1, result.getProducts().size());
+            assertEquals(1, result.getBadRows());
+            assertEquals(List.of("line " + badLine + ": expected 3 fields"), result.getErrors());
+            int expected = 1;
+            for (Product p : result.getProducts()) {
+                if (expected + 1 == badLine) expected++;
+                assertEquals("Item, number " + expected, p.getName());
+                assertEquals(expected, p.getQuantity());
+                expected++;
+            }
+        }
+    }
+
+    @Test
+    void pricesMatchDoubleParsing() {
+        String[] prices = {"0", "1", "1.", ".5", "19.99", " 2.50 ", "123456789012345", "0.1", "0.30000000000000004",
+                "999999999999.99", "1e2", "2.5E-3", "12345678901234567890", "0.0000000000000001",
+                "1.00000000000000000000001", "0.123456789012345678"};
+        for (String price : prices) {
+            Product p = CatalogImporter.parseProductRow("X," + price + ",1");
+            assertEquals(Double.parseDouble(price.trim()), p == null ? Double.NaN : p.getPrice(), 0.0, price);
+        }
+    }
+
+    @Test
+    void badPricesAreRejected() {
+        for (String price : new String[] {"", ".", "-1", "abc", "1.2.3", "NaN", "Infinity", "1e400"}) {
+            assertNull(CatalogImporter.parseProductRow("X," + price + ",1"), price);
+        }
+    }
+
+    @Test
+    void longFractionsDoNotAbortTheImport() throws IOException {
+        CatalogImporter.Result result = parse("A,0.0000000000000001,1\n"
+                + "B,1.5,2\n"
+                + "C,-3,1\n"
+                + "D,2,99999999999\n", 2);
+
+        assertEquals(2, result.getProducts().size());
+        assertEquals(1e-16, result.getProducts().get(0).getPrice(), 0.0);
+        assertEquals(List.of("line 3: bad price", "line 4: quantity too large"), result.getErrors());
+    }
+
+    private CatalogImporter.Result parse(String content, int threads) throws IOException {
+        Path file = dir.resolve("catalog.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return CatalogImporter.parse(file, threads);
+    }
+}
@@ -0,0 +1,83 @@
+package util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Product;
+import service.ProductService;
+
+/**
+ * Heap and GC cost of a very large catalog: loads synthetic products, reports retained
+ * heap, then applies random stock changes the way holds and checkouts do, taking a catalog
+ * snapshot every so often the way readers do, and reports the rate and the garbage
+ * collections they caused. Run with a fixed heap (e.g. -Xmx4g).
+ *
+ * Usage: InventoryBenchmark [products] [stockChanges] [changesPerSnapshot]
+ */
+public class InventoryBenchmark {
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+        int changesPerSnapshot = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        List<Product> products = new ArrayList<>(productCount);
+        String[] names = new String[productCount];
+        for (int i = 0; i < productCount; i++) {
+            names[i] = "SKU-" + i;
+            products.add(new Product(names[i], 1 + i % 500, 1_000));
+        }
+        long before = usedHeap();
+        ProductService productService = new ProductService();
+        productService.addProducts(products);
+        products = null;
+        long after = usedHeap();
+        System.out.printf("products=%d catalog heap=%.1f MB (%.1f bytes/product), stock off-heap=%.1f MB%n", productCount,
+                (after - before) / (1024.0 * 1024.0), (after - before) / (double) productCount,
+                productService.getInventoryBytes() / (1024.0 * 1024.0));
+
+        Random random = new Random(42);
+        for (int i = 0; i < changes / 10; i++) { // JIT warm-up
+            String name = names[random.nextInt(productCount)];
+            productService.adjustStock(name, random.nextBoolean() ? 1 : -1);
+            if (i % changesPerSnapshot == 0) productService.snapshot();
+        }
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            String name = names[random.nextInt(productCount)];
+            productService.adjustStock(name, random.nextBoolean() ? 1 : -1);
+            if (i % changesPerSnapshot == 0) productService.snapshot();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("stock changes=%d snapshot every %d, %.0f ns/change, GCs=%d (%d ms)%n", changes,
+                changesPerSnapshot, elapsed / (double) changes, gcCount() - gcCount, gcMillis() - gcMillis);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += gc.getCollectionCount();
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += gc.getCollectionTime();
+        return millis;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
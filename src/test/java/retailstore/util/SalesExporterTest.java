@@ -0,0 +1,191 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import model.CustomerRegistry;
+import model.DailySummary;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import payment.CardPayment;
+import payment.CashPayment;
+import service.SalesService;
+
+class SalesExporterTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 2, 29);
+    private static final String[] NAMES = {
+            "Anna", "Smith, John", "\"Jo\" Miller", "Zoë Ünal", "Emoji 😀 Fan", "Tab\tand\u0001bell",
+            "Back\\slash", "Line\nbreak", "Lone \ud800 surrogate", "日本語の名前"};
+    private static final double[] AMOUNTS = {10, -25.5, 0.125, -0.125, 1.005, 2.675, 1_000_000.005, 0, -0.001, 99.994};
+
+    @TempDir
+    Path dir;
+
+    // Rows long enough, and with enough multi-byte characters, to cross the 64 KiB buffer at many points
+    private static List<Sale> sales(int count) {
+        List<Sale> sales = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = NAMES[i % NAMES.length] + (i < NAMES.length ? "" : " " + i);
+            double amount = AMOUNTS[i % AMOUNTS.length];
+            LocalDateTime at = DAY.atTime(8, 0).plusSeconds(i).plusNanos(i % 4 == 0 ? 0 : 123_456_789L / (i % 4 * 10));
+            sales.add(new Sale((amount < 0 ? "RFDTXN" : "TXN") + i, CustomerRegistry.intern(name, i % 3 == 0 ? "VIP" : "Regular"),
+                    i % 2 == 0 ? CashPayment.INSTANCE : CardPayment.INSTANCE, amount, i % 3 == 0 ? 0.5 : 0, amount, at));
+        }
+        return sales;
+    }
+
+    private static String csv(String s) {
+        boolean quote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        return quote ? '"' + s.replace("\"", "\"\"") + '"' : s;
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String amount(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String expectedCsv(List<Sale> sales) {
+        StringBuilder sb = new StringBuilder(StoreUtils.SALES_CSV_HEADER).append('\n');
+        for (Sale s : sales) {
+            sb.append(csv(s.getSaleId())).append(',').append(csv(s.getCustomer().getCustomerType())).append(',')
+                    .append(csv(s.getCustomer().getName())).append(',').append(amount(s.getTotalAmount())).append(',')
+                    .append(amount(s.getDiscountAmount())).append(',').append(amount(s.getFinalAmount())).append(',')
+                    .append(s.getPayment().getClass().getSimpleName()).append(',')
+                    .append(s.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String expectedJson(List<Sale> sales) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < sales.size(); i++) {
+            Sale s = sales.get(i);
+            sb.append(i == 0 ? "\n" : ",\n").append("{\"saleId\":").append(json(s.getSaleId()))
+                    .append(",\"customerType\":").append(json(s.getCustomer().getCustomerType()))
+                    .append(",\"customerName\":").append(json(s.getCustomer().getName()))
+                    .append(",\"totalAmount\":").append(amount(s.getTotalAmount()))
+                    .append(",\"discountAmount\":").append(amount(s.getDiscountAmount()))
+                    .append(",\"finalAmount\":").append(amount(s.getFinalAmount()))
+                    .append(",\"paymentType\":").append(json(s.getPayment().getClass().getSimpleName()))
+                    .append(",\"timestamp\":\"").append(s.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                    .append("\"}");
+        }
+        return sb.append(sales.isEmpty() ? "]\n" : "\n]\n").toString();
+    }
+
+    private static SalesService service(List<Sale> sales) throws IOException {
+        SalesService service = new SalesService();
+        for (Sale sale : sales) service.addSale(sale);
+        return service;
+    }
+
+    // Byte for byte, so the UTF-8 encoding (and an unpaired surrogate becoming '?') is checked too
+    private void assertExport(SalesService service, SalesExporter.Format format, String expected, long rows) throws IOException {
+        Path target = dir.resolve("export." + format.name().toLowerCase(Locale.ROOT));
+        assertEquals(rows, service.exportSales(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), target, format));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), Files.readAllBytes(target));
+    }
+
+    @Test
+    void csvExportMatchesStringFormatting() throws IOException {
+        List<Sale> sales = sales(4000);
+        String expected = expectedCsv(sales);
+        assertTrue(expected.getBytes(StandardCharsets.UTF_8).length > 4 * 64 * 1024);
+        assertExport(service(sales), SalesExporter.Format.CSV, expected, sales.size());
+    }
+
+    @Test
+    void jsonExportMatchesStringFormatting() throws IOException {
+        List<Sale> sales = sales(4000);
+        assertExport(service(sales), SalesExporter.Format.JSON, expectedJson(sales), sales.size());
+    }
+
+    @Test
+    void quotedCsvFieldsReadBack() throws IOException {
+        List<Sale> sales = sales(3);
+        Path target = dir.resolve("export.csv");
+        service(sales).exportSales(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), target, SalesExporter.Format.CSV);
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        for (int i = 0; i < sales.size(); i++) {
+            Sale read = StoreUtils.parseSaleCSV(lines.get(i + 1));
+            assertEquals(sales.get(i).getSaleId(), read.getSaleId());
+            assertEquals(sales.get(i).getCustomer().getName(), read.getCustomer().getName());
+            assertEquals(amount(sales.get(i).getFinalAmount()), amount(read.getFinalAmount()));
+            assertEquals(sales.get(i).getTimestamp(), read.getTimestamp());
+        }
+    }
+
+    @Test
+    void anEmptyRangeWritesOnlyTheFrame() throws IOException {
+        SalesService service = service(sales(10));
+        LocalDateTime from = DAY.plusDays(5).atStartOfDay();
+        Path csv = dir.resolve("empty.csv");
+        Path json = dir.resolve("empty.json");
+        assertEquals(0, service.exportSales(from, from.plusDays(1), csv, SalesExporter.Format.CSV));
+        assertEquals(0, service.exportSales(from, from.plusDays(1), json, SalesExporter.Format.JSON));
+        assertEquals(StoreUtils.SALES_CSV_HEADER + "\n", Files.readString(csv));
+        assertEquals("[]\n", Files.readString(json));
+    }
+
+    @Test
+    void zReportsMatchTheSummary() throws IOException {
+        SalesService service = service(sales(50));
+        Path csv = dir.resolve("z.csv");
+        Path json = dir.resolve("z.json");
+        DailySummary summary = service.exportZReport(DAY, csv, SalesExporter.Format.CSV);
+        service.exportPeriodReport(DAY.minusDays(1), DAY, json, SalesExporter.Format.JSON);
+        assertEquals(50, summary.getSaleCount());
+
+        StringBuilder expected = new StringBuilder("date,section,key,count,totalAmount,discountAmount,finalAmount\n");
+        expected.append(summaryRow(DAY.toString(), "all", "all", summary.getSaleCount(), summary.getTotalAmount(),
+                summary.getDiscountAmount(), summary.getFinalAmount()));
+        for (Map.Entry<String, DailySummary.Breakdown> e : summary.getByPaymentType().entrySet()) {
+            expected.append(summaryRow(DAY.toString(), "payment", e.getKey(), e.getValue()));
+        }
+        for (Map.Entry<String, DailySummary.Breakdown> e : summary.getByCustomerType().entrySet()) {
+            expected.append(summaryRow(DAY.toString(), "customer", e.getKey(), e.getValue()));
+        }
+        assertEquals(expected.toString(), Files.readString(csv));
+
+        String period = Files.readString(json);
+        assertTrue(period.startsWith("{\"date\":\"" + DAY.minusDays(1) + "/" + DAY + "\",\"count\":50,\"totalAmount\":"
+                + amount(summary.getTotalAmount()) + ",\"discountAmount\":" + amount(summary.getDiscountAmount())
+                + ",\"finalAmount\":" + amount(summary.getFinalAmount()) + ",\"byPaymentType\":{\"CashPayment\":{\"count\":25,"), period);
+        assertTrue(period.endsWith("}}}\n"), period);
+    }
+
+    private static String summaryRow(String date, String section, String key, DailySummary.Breakdown b) {
+        return summaryRow(date, section, key, b.getCount(), b.getTotalAmount(), b.getDiscountAmount(), b.getFinalAmount());
+    }
+
+    private static String summaryRow(String date, String section, String key, int count, double total, double discount, double fin) {
+        return date + "," + section + "," + csv(key) + "," + count + "," + amount(total) + "," + amount(discount) + "," + amount(fin) + "\n";
+    }
+}
@@ -0,0 +1,56 @@
+package util;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import model.Sale;
+
+/**
+ * Heap cost of loaded sales history: parses synthetic ledger rows the way the ledger
+ * does and reports retained bytes per Sale. Run with a fixed heap (e.g. -Xmx2g) and no
+ * other load so the before/after numbers are comparable.
+ *
+ * Usage: SalesMemoryBenchmark [rows] [distinctCustomers]
+ */
+public class SalesMemoryBenchmark {
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int customers = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        long before = usedHeap();
+        List<Sale> sales = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            int customer = random.nextInt(customers);
+            double total = 50 + random.nextInt(5000);
+            boolean vip = customer % 5 == 0;
+            double discount = vip ? total * 0.1 : 0;
+            // Each row is a fresh String, as read from disk
+            String row = String.format("TXN%d,%s,Customer %d,%.2f,%.2f,%.2f,%s,%s",
+                    1_700_000_000_000L + i, vip ? "VIP" : "Regular", customer, total, discount, total - discount,
+                    random.nextBoolean() ? "CashPayment" : "CardPayment",
+                    start.plusSeconds(i * 20L).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            sales.add(StoreUtils.parseSaleCSV(row));
+        }
+        long after = usedHeap();
+
+        System.out.printf("rows=%d customers=%d retained=%.1f MB bytes/sale=%.1f%n",
+                rows, customers, (after - before) / (1024.0 * 1024.0), (after - before) / (double) sales.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
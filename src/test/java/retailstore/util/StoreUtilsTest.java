@@ -0,0 +1,89 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import model.CustomerRegistry;
+import model.Product;
+import model.Sale;
+import org.junit.jupiter.api.Test;
+import payment.CardPayment;
+import payment.CashPayment;
+
+class StoreUtilsTest {
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 5, 1, 10, 15, 30, 123_000_000);
+
+    @Test
+    void saleRowRoundTripsNamesWithCommasAndQuotes() {
+        for (String name : Arrays.asList("John Doe", "Smith, John", "Bob \"The Builder\"", "\"Quoted\", twice,", "")) {
+            Sale sale = new Sale("TXN1", CustomerRegistry.intern(name, "VIP"), CardPayment.INSTANCE, 120.5, 12.05, 108.45, AT);
+            Sale parsed = StoreUtils.parseSaleCSV(StoreUtils.formatSaleCSV(sale));
+            assertNotNull(parsed, name);
+            assertEquals(name, parsed.getCustomer().getName());
+            assertEquals("VIP", parsed.getCustomer().getCustomerType());
+            assertEquals("TXN1", parsed.getSaleId());
+            assertEquals(CardPayment.INSTANCE, parsed.getPayment());
+            assertEquals(108.45, parsed.getFinalAmount(), 1e-9);
+            assertEquals(AT, parsed.getTimestamp());
+        }
+    }
+
+    @Test
+    void saleRowIgnoresDefaultLocale() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            Sale sale = new Sale("TXN2", CustomerRegistry.intern("Anna", "Regular"), CashPayment.INSTANCE, 10.5, 0, 10.5, AT);
+            String row = StoreUtils.formatSaleCSV(sale);
+            assertEquals("TXN2,Regular,Anna,10.50,0.00,10.50,CashPayment,2024-05-01T10:15:30.123,", row);
+            assertEquals(10.5, StoreUtils.parseSaleCSV(row).getTotalAmount(), 1e-9);
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    void lineItemsRoundTrip() {
+        List<Product> items = Arrays.asList(new Product("Milk, 1L", 1.25, 2), new Product("A:B;C \"D\"", 0.1, 1),
+                new Product("Käse 100%", 3.333, 12));
+        Sale sale = new Sale("TXN7", CustomerRegistry.intern("Anna", "Regular"), items, CashPayment.INSTANCE,
+                14.25, 0, 14.25, AT);
+        Sale parsed = StoreUtils.parseSaleCSV(StoreUtils.formatSaleCSV(sale));
+        assertNotNull(parsed);
+        assertEquals(3, parsed.getProducts().size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getName(), parsed.getProducts().get(i).getName());
+            assertEquals(items.get(i).getQuantity(), parsed.getProducts().get(i).getQuantity());
+            assertEquals(items.get(i).getPrice(), parsed.getProducts().get(i).getPrice());
+        }
+        assertNull(StoreUtils.parseSaleCSV("TXN8,Regular,Anna,1.00,0.00,1.00,CashPayment,2024-05-01T10:15:30,Milk:x:1.0"));
+    }
+
+    @Test
+    void legacyUnquotedRowsStillParse() {
+        Sale sale = StoreUtils.parseSaleCSV("TXN3,Regular,John Doe,100.00,0.00,100.00,CashPayment,2024-05-01T10:15:30");
+        assertNotNull(sale);
+        assertEquals("John Doe", sale.getCustomer().getName());
+        assertEquals(0, sale.getProducts().size());
+    }
+
+    @Test
+    void malformedRowsAreRejected() {
+        assertNull(StoreUtils.parseSaleCSV("TXN4,Regular,\"Smith, John,100.00,0.00,100.00,CashPayment,2024-05-01T10:15:30"));
+        assertNull(StoreUtils.parseSaleCSV("TXN5,Regular,\"Smith\"x,100.00,0.00,100.00,CashPayment,2024-05-01T10:15:30"));
+        assertNull(StoreUtils.parseSaleCSV("TXN6,Regular,Smith, John,100.00,0.00,100.00,CashPayment,2024-05-01T10:15:30"));
+        assertNull(StoreUtils.parseSaleCSV(""));
+    }
+
+    @Test
+    void splitsQuotedFields() {
+        assertEquals(Arrays.asList("a", "b,c", "d\"e", ""), StoreUtils.splitCSV("a,\"b,c\",\"d\"\"e\","));
+        assertEquals(Arrays.asList(""), StoreUtils.splitCSV(""));
+        assertNull(StoreUtils.splitCSV("\"open"));
+    }
+}